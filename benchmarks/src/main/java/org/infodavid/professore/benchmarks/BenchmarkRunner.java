@@ -0,0 +1,54 @@
+package org.infodavid.professore.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The Class BenchmarkRunner.<br>
+ * Runs the benchmarks with the GC profiler to report the allocation rate.<br>
+ * Unless a mode is given on the command line, the throughput is reported in operations per second and the latency percentiles in microseconds.<br>
+ * Usage: java -jar benchmarks/target/benchmarks.jar [JMH options]
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * The main method.
+     * @param args the arguments
+     * @throws IOException                Signals that an I/O exception has occurred.
+     * @throws RunnerException            the runner exception
+     * @throws CommandLineOptionException the command line option exception
+     */
+    public static void main(final String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        final CommandLineOptions options = new CommandLineOptions(args);
+
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams() || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+
+            return;
+        }
+
+        if (!options.getBenchModes().isEmpty()) {
+            new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+
+            return;
+        }
+
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).build()).run();
+        new Runner(new OptionsBuilder().parent(options).mode(Mode.SampleTime).timeUnit(TimeUnit.MICROSECONDS).build()).run();
+    }
+
+    /**
+     * Instantiates a new benchmark runner.
+     */
+    private BenchmarkRunner() {
+        super();
+    }
+}
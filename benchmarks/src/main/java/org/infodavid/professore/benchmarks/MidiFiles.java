@@ -0,0 +1,78 @@
+package org.infodavid.professore.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.infodavid.professore.core.Constants;
+
+/**
+ * The Class MidiFiles.<br>
+ * Generates standard MIDI files used as benchmark inputs.
+ */
+public final class MidiFiles {
+
+    /** The Constant RESOLUTION. */
+    private static final int RESOLUTION = 480;
+
+    /**
+     * Creates a temporary MIDI file.
+     * @param tracks        the number of tracks
+     * @param notesPerTrack the number of notes per track
+     * @return the path
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static Path create(final int tracks, final int notesPerTrack) throws IOException, InvalidMidiDataException {
+        final Path result = Files.createTempFile("professore-", Constants.MID_EXTENSION);
+
+        try {
+            MidiSystem.write(newSequence(tracks, notesPerTrack), 1, result.toFile());
+        } catch (final IOException e) {
+            Files.deleteIfExists(result);
+
+            throw e;
+        }
+
+        return result;
+    }
+
+    /**
+     * New sequence, each track plays an ascending and descending scale on its own channel.
+     * @param tracks        the number of tracks
+     * @param notesPerTrack the number of notes per track
+     * @return the sequence
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static Sequence newSequence(final int tracks, final int notesPerTrack) throws InvalidMidiDataException {
+        final Sequence result = new Sequence(Sequence.PPQ, RESOLUTION);
+
+        for (int t = 0; t < tracks; t++) {
+            final Track track = result.createTrack();
+            final int channel = t % 16;
+
+            for (int i = 0; i < notesPerTrack; i++) {
+                final int key = 36 + Math.abs(i % 96 - 48) + t;
+                final long tick = (long) i * RESOLUTION / 4;
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key & 0x7F, 64 + i % 64), tick));
+                track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key & 0x7F, 0), tick + RESOLUTION / 8));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Instantiates a new midi files.
+     */
+    private MidiFiles() {
+        super();
+    }
+}
@@ -0,0 +1,103 @@
+package org.infodavid.professore.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+import org.infodavid.professore.core.Note;
+import org.infodavid.professore.core.NotePool;
+import org.infodavid.professore.core.midi.MidiPlayer;
+import org.infodavid.professore.core.midi.SequenceCache;
+import org.infodavid.professore.core.midi.SoundControllerAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Class MidiPlayerBenchmark.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MidiPlayerBenchmark {
+
+    /** The use of the cache of the parsed files. */
+    @Param({ "false", "true" })
+    private boolean cached;
+
+    /** The file. */
+    private Path file;
+
+    /** The notes per track, small and large files. */
+    @Param({ "256", "65536" })
+    private int notesPerTrack;
+
+    /** The parallel extraction of the tracks. */
+    @Param({ "false", "true" })
+    private boolean parallel;
+
+    /** The player. */
+    private MidiPlayer player;
+
+    /** The tracks. */
+    @Param({ "4" })
+    private int tracks;
+
+    /**
+     * Read the file.
+     * @return the number of notes
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Benchmark
+    public int read() throws IOException, InvalidMidiDataException {
+        final List<Note> notes = player.read(file);
+        NotePool.getInstance().returnObjects(notes);
+
+        return notes.size();
+    }
+
+    /**
+     * Read the file into a columnar sequence.
+     * @return the number of notes
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Benchmark
+    public int readSequence() throws IOException, InvalidMidiDataException {
+        return player.readSequence(file).size();
+    }
+
+    /**
+     * Sets the up.
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Setup
+    public void setUp() throws IOException, InvalidMidiDataException {
+        file = MidiFiles.create(tracks, notesPerTrack);
+        player = new MidiPlayer(new SoundControllerAdapter());
+        player.setParallel(parallel);
+        player.setCache(cached ? new SequenceCache(SequenceCache.DEFAULT_MAXIMUM_SIZE) : null);
+    }
+
+    /**
+     * Tear down.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        player.close();
+        Files.deleteIfExists(file);
+    }
+}
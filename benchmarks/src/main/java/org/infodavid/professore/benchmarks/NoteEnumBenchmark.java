@@ -0,0 +1,59 @@
+package org.infodavid.professore.benchmarks;
+
+import org.infodavid.professore.core.NoteEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Class NoteEnumBenchmark.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteEnumBenchmark {
+
+    /** The Constant NAMES. */
+    private static final String[] NAMES = { "C", "do#", "Re", "E♭", "mi", "F", "Sol♭", "g", "LA♭", "la", "B♭", "si", "X", "Fa#", "D", "sol#" };
+
+    /** The index. */
+    private int index;
+
+    /** The note. */
+    private NoteEnum note = NoteEnum.DO;
+
+    /**
+     * Next note including alterations.
+     * @return the note enum
+     */
+    @Benchmark
+    public NoteEnum next() {
+        note = note.next(true);
+
+        return note;
+    }
+
+    /**
+     * Next natural note.
+     * @return the note enum
+     */
+    @Benchmark
+    public NoteEnum nextNatural() {
+        note = note.next(false);
+
+        return note;
+    }
+
+    /**
+     * Parses a name.
+     * @return the note enum
+     */
+    @Benchmark
+    public NoteEnum parse() {
+        return NoteEnum.parse(NAMES[index++ & NAMES.length - 1]);
+    }
+}
@@ -0,0 +1,62 @@
+package org.infodavid.professore.benchmarks;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+import org.infodavid.professore.core.Note;
+import org.infodavid.professore.core.NotePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Class NotePoolBenchmark.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotePoolBenchmark {
+
+    /** The message. */
+    private ShortMessage message;
+
+    /**
+     * Borrow and return a note.
+     * @return the note
+     */
+    @Benchmark
+    public Note borrowObject() {
+        final Note result = NotePool.getInstance().borrowObject(message);
+        result.close();
+
+        return result;
+    }
+
+    /**
+     * Borrow and return a note from several threads.
+     * @return the note
+     */
+    @Benchmark
+    @Threads(4)
+    public Note borrowObjectContended() {
+        final Note result = NotePool.getInstance().borrowObject(message);
+        result.close();
+
+        return result;
+    }
+
+    /**
+     * Sets the up.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Setup
+    public void setUp() throws InvalidMidiDataException {
+        message = new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 93);
+    }
+}
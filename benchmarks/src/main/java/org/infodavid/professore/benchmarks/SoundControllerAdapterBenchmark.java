@@ -0,0 +1,86 @@
+package org.infodavid.professore.benchmarks;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+import org.infodavid.professore.core.midi.NoteFilterImpl;
+import org.infodavid.professore.core.midi.SoundControllerAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Class SoundControllerAdapterBenchmark.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SoundControllerAdapterBenchmark {
+
+    /** The messages of a chord, pressed then released. */
+    private ShortMessage[] chord;
+
+    /** The controller. */
+    private SoundControllerAdapter controller;
+
+    /** The filtered. */
+    @Param({ "false", "true" })
+    private boolean filtered;
+
+    /** The pressed message. */
+    private ShortMessage pressed;
+
+    /** The released message. */
+    private ShortMessage released;
+
+    /**
+     * Control change of a note pressed then released.
+     */
+    @Benchmark
+    public void controlChange() {
+        controller.controlChange(pressed);
+        controller.controlChange(released);
+    }
+
+    /**
+     * Control change of a chord pressed then released, one message at a time.
+     */
+    @Benchmark
+    public void controlChangeChord() {
+        for (final ShortMessage message : chord) {
+            controller.controlChange(message);
+        }
+    }
+
+    /**
+     * Control change of a chord pressed then released, delivered as a batch.
+     */
+    @Benchmark
+    public void controlChangeChordBatch() {
+        controller.controlChange(chord, chord.length);
+    }
+
+    /**
+     * Sets the up.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Setup
+    public void setUp() throws InvalidMidiDataException {
+        controller = new SoundControllerAdapter();
+        pressed = new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 93);
+        released = new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0);
+        chord = new ShortMessage[] { pressed, new ShortMessage(ShortMessage.NOTE_ON, 0, 64, 93), new ShortMessage(ShortMessage.NOTE_ON, 0, 67, 93), new ShortMessage(ShortMessage.NOTE_ON, 0, 72, 93), released, new ShortMessage(ShortMessage.NOTE_OFF, 0, 64, 0), new ShortMessage(ShortMessage.NOTE_OFF, 0, 67, 0), new ShortMessage(ShortMessage.NOTE_OFF, 0, 72, 0) };
+
+        if (filtered) {
+            final NoteFilterImpl filter = new NoteFilterImpl();
+            filter.setKey((byte) 48);
+            controller.setFilter(filter);
+        }
+    }
+}
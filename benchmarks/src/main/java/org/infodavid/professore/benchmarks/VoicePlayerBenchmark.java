@@ -0,0 +1,109 @@
+package org.infodavid.professore.benchmarks;
+
+import java.io.IOException;
+
+import org.infodavid.professore.core.NoteEnum;
+import org.infodavid.professore.core.VoicePlayer;
+import org.infodavid.professore.core.audio.NullAudioSink;
+import org.infodavid.professore.core.audio.VoiceMixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Class VoicePlayerBenchmark.<br>
+ * Measures the mixing of one block by the voice player, with the given number of notes sounding at the same time, and the playback of a note by the player writing to a null sink.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VoicePlayerBenchmark {
+
+    /** The Constant NOTES. */
+    private static final NoteEnum[] NOTES = NoteEnum.values();
+
+    /** The block. */
+    private byte[] block;
+
+    /** The gain applied by the mixer, unity skips the multiplication of the samples. */
+    @Param({ "1", "0.5" })
+    private float gain;
+
+    /** The index. */
+    private int index;
+
+    /** The mixer. */
+    private VoiceMixer mixer;
+
+    /** The number of notes sounding at the same time. */
+    @Param({ "1", "4", "16" })
+    private int polyphony;
+
+    /** The player. */
+    private VoicePlayer player;
+
+    /** The sink. */
+    private NullAudioSink sink;
+
+    /**
+     * Mix one block, a note is started when a voice is free to keep the polyphony constant.
+     * @return the number of written bytes
+     */
+    @Benchmark
+    public int mix() {
+        while (mixer.getActiveVoices() < polyphony) {
+            mixer.start(player.getSamples(NOTES[index++ % NOTES.length]));
+        }
+
+        return mixer.mix(block);
+    }
+
+    /**
+     * Play a note and wait until all its blocks are written to the sink by the audio thread of the player.
+     * @return the number of written bytes
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Benchmark
+    public long play() throws IOException {
+        final NoteEnum note = NOTES[index++ % NOTES.length];
+        final int blocks = (player.getSamples(note).length * 2 + block.length - 1) / block.length;
+        final long expected = sink.getByteCount() + (long) blocks * block.length;
+        player.play(note);
+
+        while (sink.getByteCount() < expected) {
+            Thread.onSpinWait();
+        }
+
+        return expected;
+    }
+
+    /**
+     * Sets the up.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        player = new VoicePlayer();
+        mixer = new VoiceMixer(VoiceMixer.DEFAULT_VOICES, player.getBank().getChannels(), VoiceMixer.DEFAULT_BLOCK_FRAMES);
+        mixer.setGain(gain);
+        block = new byte[mixer.getBlockSize()];
+        sink = new NullAudioSink();
+        player.setSink(sink);
+        player.open();
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        player.close();
+    }
+}
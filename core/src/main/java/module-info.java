@@ -1,5 +1,6 @@
 module org.infodavid.professore.core {
     exports org.infodavid.professore.core;
+    exports org.infodavid.professore.core.audio;
     exports org.infodavid.professore.core.midi;
 
     opens org.infodavid.professore.core;
@@ -10,6 +11,7 @@ module org.infodavid.professore.core {
     requires gs.collections;
     requires transitive org.apache.commons.lang3;
     requires transitive java.desktop;
+    requires transitive java.management;
     requires transitive org.slf4j;
     requires org.apache.commons.io;
 }
@@ -0,0 +1,135 @@
+package org.infodavid.professore.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The Class CacheStatistics.<br>
+ * Immutable snapshot of the statistics of a cache, durations are in nanoseconds.
+ */
+public final class CacheStatistics {
+
+    /** The number of evicted entries. */
+    private final long evictionCount;
+
+    /** The sum of the weights of the evicted entries. */
+    private final long evictionWeight;
+
+    /** The number of lookups returning a cached value. */
+    private final long hitCount;
+
+    /** The number of failed loads. */
+    private final long loadFailureCount;
+
+    /** The number of successful loads. */
+    private final long loadSuccessCount;
+
+    /** The number of lookups returning a loaded value. */
+    private final long missCount;
+
+    /** The time spent loading the values. */
+    private final long totalLoadTime;
+
+    /**
+     * Instantiates a new snapshot.
+     * @param hitCount         the hit count
+     * @param missCount        the miss count
+     * @param loadSuccessCount the load success count
+     * @param loadFailureCount the load failure count
+     * @param totalLoadTime    the total load time
+     * @param evictionCount    the eviction count
+     * @param evictionWeight   the eviction weight
+     */
+    public CacheStatistics(final long hitCount, final long missCount, final long loadSuccessCount, final long loadFailureCount, final long totalLoadTime, final long evictionCount, final long evictionWeight) {
+        super();
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    /**
+     * Gets the number of evicted entries.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the sum of the weights of the evicted entries.
+     * @return the eviction weight
+     */
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    /**
+     * Gets the number of lookups returning a cached value.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the ratio of the lookups returning a cached value.
+     * @return the hit rate, 1 if there was no lookup
+     */
+    public double getHitRate() {
+        final long requests = getRequestCount();
+
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    /**
+     * Gets the number of failed loads.
+     * @return the load failure count
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Gets the number of successful loads.
+     * @return the load success count
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Gets the number of lookups returning a loaded value.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of lookups.
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Gets the time spent loading the values.
+     * @return the total load time
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
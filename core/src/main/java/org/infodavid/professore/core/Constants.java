@@ -14,6 +14,9 @@ public final class Constants {
     /** The Constant NOTE_NAMES_IT. */
     public static final String[] NOTE_NAMES_IT = { NoteEnum.DO.getItalianName(), NoteEnum.DO_DIESIS.getItalianName(), NoteEnum.RE.getItalianName(), NoteEnum.RE_DIESIS.getItalianName(), NoteEnum.MI.getItalianName(), NoteEnum.FA.getItalianName(), NoteEnum.FA_DIESIS.getItalianName(), NoteEnum.SOL.getItalianName(), NoteEnum.SOL_DIESIS.getItalianName(), NoteEnum.LA.getItalianName(), NoteEnum.LA_DIESIS.getItalianName(), NoteEnum.SI.getItalianName() }; //NOSONAR Keep public
 
+    /** The Constant PAN_CONTROL_CHANGE. */
+    public static final byte PAN_CONTROL_CHANGE = 10;
+
     /** The Constant PITCH_CONTROL_CHANGE. */
     public static final byte PITCH_CONTROL_CHANGE = 5;
 
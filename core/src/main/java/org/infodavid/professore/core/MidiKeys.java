@@ -0,0 +1,130 @@
+package org.infodavid.professore.core;
+
+/**
+ * The Class MidiKeys.<br>
+ * Precomputed metadata of the 128 MIDI keys, the conversions are simple array loads.<br>
+ * Octaves use the convention where key 60 is the fourth octave (C4) and key 69 is A4 at 440 Hz.
+ */
+public final class MidiKeys {
+
+    /** The Constant BASE_NOTES. */
+    private static final NoteEnum[] BASE_NOTES;
+
+    /** The Constant COUNT. */
+    public static final int COUNT = 128;
+
+    /** The Constant ENGLISH_NAMES. */
+    private static final String[] ENGLISH_NAMES;
+
+    /** The Constant FREQUENCIES. */
+    private static final double[] FREQUENCIES;
+
+    /** The Constant ITALIAN_NAMES. */
+    private static final String[] ITALIAN_NAMES;
+
+    /** The Constant KEY_MASK. */
+    private static final int KEY_MASK = 0x7F;
+
+    /** The Constant OCTAVES. */
+    private static final byte[] OCTAVES;
+
+    /** The Constant PITCH_CLASSES. */
+    private static final byte[] PITCH_CLASSES;
+
+    static {
+        BASE_NOTES = new NoteEnum[COUNT];
+        ENGLISH_NAMES = new String[COUNT];
+        FREQUENCIES = new double[COUNT];
+        ITALIAN_NAMES = new String[COUNT];
+        OCTAVES = new byte[COUNT];
+        PITCH_CLASSES = new byte[COUNT];
+
+        for (int key = 0; key < COUNT; key++) {
+            final NoteEnum note = NoteEnum.fromPitchClass(key % 12);
+            final byte octave = (byte) (key / 12 - 1);
+            BASE_NOTES[key] = note;
+            OCTAVES[key] = octave;
+            PITCH_CLASSES[key] = (byte) (key % 12);
+            ENGLISH_NAMES[key] = note.getEnglishName() + octave;
+            ITALIAN_NAMES[key] = note.getItalianName() + octave;
+            FREQUENCIES[key] = 440.0 * Math.pow(2.0, (key - 69) / 12.0);
+        }
+    }
+
+    /**
+     * Gets the base note.
+     * @param key the MIDI key
+     * @return the base note
+     */
+    public static NoteEnum getBaseNote(final int key) {
+        return BASE_NOTES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the english name including the octave (C4 for key 60).
+     * @param key the MIDI key
+     * @return the name
+     */
+    public static String getEnglishName(final int key) {
+        return ENGLISH_NAMES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the frequency in Hertz using the equal temperament.
+     * @param key the MIDI key
+     * @return the frequency
+     */
+    public static double getFrequency(final int key) {
+        return FREQUENCIES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the italian name including the octave (Do4 for key 60).
+     * @param key the MIDI key
+     * @return the name
+     */
+    public static String getItalianName(final int key) {
+        return ITALIAN_NAMES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the octave.
+     * @param key the MIDI key
+     * @return the octave
+     */
+    public static byte getOctave(final int key) {
+        return OCTAVES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the pitch class, 0 for DO up to 11 for SI.
+     * @param key the MIDI key
+     * @return the pitch class
+     */
+    public static byte getPitchClass(final int key) {
+        return PITCH_CLASSES[key & KEY_MASK];
+    }
+
+    /**
+     * Gets the MIDI key.
+     * @param note   the note
+     * @param octave the octave
+     * @return the key or -1 if out of the MIDI range
+     */
+    public static int getKey(final NoteEnum note, final int octave) {
+        final int result = (octave + 1) * 12 + note.getPitchClass();
+
+        if (result < 0 || result >= COUNT) {
+            return -1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Instantiates a new MIDI keys.
+     */
+    private MidiKeys() {
+        super();
+    }
+}
@@ -1,13 +1,17 @@
 package org.infodavid.professore.core;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 /**
  * The Class Note.
  */
-public class Note implements Serializable {
+public class Note implements AutoCloseable, Serializable {
+
+    /** The Constant LEASED, updater of the leased flag so a note is borrowed or returned once by a single thread. */
+    private static final AtomicIntegerFieldUpdater<Note> LEASED = AtomicIntegerFieldUpdater.newUpdater(Note.class, "leased");
 
     /** The Constant serialVersionUID. */
     private static final long serialVersionUID = -269802217234528925L;
@@ -21,6 +25,9 @@ public class Note implements Serializable {
     /** The base note. */
     private NoteEnum baseNote;
 
+    /** The leased, 1 if borrowed from the pool and not returned yet. */
+    private transient volatile int leased;
+
     /** The octave. */
     private byte octave;
 
@@ -53,6 +60,17 @@ public class Note implements Serializable {
         velocity = source.velocity;
     }
 
+    /**
+     * Return the note to the pool if it has been borrowed from it, the note must not be used after.
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        if (isLeased()) {
+            NotePool.getInstance().returnObject(this);
+        }
+    }
+
     /*
      * (non-javadoc)
      * @see java.lang.Object#equals(java.lang.Object)
@@ -116,6 +134,14 @@ public class Note implements Serializable {
         return octave;
     }
 
+    /**
+     * Checks if is leased.
+     * @return true, if borrowed from the pool and not returned yet
+     */
+    boolean isLeased() {
+        return leased != 0;
+    }
+
     /**
      * Checks if is pressed.
      * @return the pressed
@@ -155,6 +181,22 @@ public class Note implements Serializable {
         return result;
     }
 
+    /**
+     * Mark the note as borrowed from the pool.
+     * @return true, if the note was not leased
+     */
+    boolean lease() {
+        return LEASED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Mark the note as returned to the pool, only one of the threads returning the same note succeeds.
+     * @return true, if the note was leased
+     */
+    boolean release() {
+        return LEASED.compareAndSet(this, 1, 0);
+    }
+
     /**
      * Sets the channel.
      * @param channel the channel to set
@@ -1,5 +1,9 @@
 package org.infodavid.professore.core;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -32,6 +36,60 @@ public enum NoteEnum {
     /** The sol diesis. */
     SOL_DIESIS("G#", "Sol#", true);
 
+    /** The Constant CHROMATIC. */
+    private static final NoteEnum[] CHROMATIC = { DO, DO_DIESIS, RE, RE_DIESIS, MI, FA, FA_DIESIS, SOL, SOL_DIESIS, LA, LA_DIESIS, SI };
+
+    /** The Constant NEXT, indexed by ordinal. */
+    private static final NoteEnum[] NEXT = new NoteEnum[CHROMATIC.length];
+
+    /** The Constant NEXT_NATURAL, indexed by ordinal. */
+    private static final NoteEnum[] NEXT_NATURAL = new NoteEnum[CHROMATIC.length];
+
+    /** The Constant PARSED, indexed by lower case name. */
+    private static final Map<String, NoteEnum> PARSED = new HashMap<>();
+
+    /** The Constant PREVIOUS, indexed by ordinal. */
+    private static final NoteEnum[] PREVIOUS = new NoteEnum[CHROMATIC.length];
+
+    /** The Constant PREVIOUS_NATURAL, indexed by ordinal. */
+    private static final NoteEnum[] PREVIOUS_NATURAL = new NoteEnum[CHROMATIC.length];
+
+    static {
+        for (byte i = 0; i < CHROMATIC.length; i++) {
+            final NoteEnum note = CHROMATIC[i];
+            final NoteEnum next = CHROMATIC[(i + 1) % CHROMATIC.length];
+            final NoteEnum previous = CHROMATIC[(i + CHROMATIC.length - 1) % CHROMATIC.length];
+            note.pitchClass = i;
+            NEXT[note.ordinal()] = next;
+            PREVIOUS[note.ordinal()] = previous;
+            // an alteration is always surrounded by natural notes
+            NEXT_NATURAL[note.ordinal()] = next.alteration ? CHROMATIC[(i + 2) % CHROMATIC.length] : next;
+            PREVIOUS_NATURAL[note.ordinal()] = previous.alteration ? CHROMATIC[(i + CHROMATIC.length - 2) % CHROMATIC.length] : previous;
+            PARSED.put(note.englishName.toLowerCase(Locale.ROOT), note);
+            PARSED.put(note.italianName.toLowerCase(Locale.ROOT), note);
+        }
+
+        PARSED.put("d♭", DO_DIESIS);
+        PARSED.put("re♭", DO_DIESIS);
+        PARSED.put("e♭", RE_DIESIS);
+        PARSED.put("mi♭", RE_DIESIS);
+        PARSED.put("g♭", FA_DIESIS);
+        PARSED.put("sol♭", FA_DIESIS);
+        PARSED.put("a♭", SOL_DIESIS);
+        PARSED.put("la♭", SOL_DIESIS);
+        PARSED.put("b♭", LA_DIESIS);
+        PARSED.put("si♭", LA_DIESIS);
+    }
+
+    /**
+     * Gets the note from its pitch class.
+     * @param pitchClass the pitch class, 0 for DO up to 11 for SI
+     * @return the note enum
+     */
+    public static NoteEnum fromPitchClass(final int pitchClass) {
+        return CHROMATIC[pitchClass];
+    }
+
     /**
      * Parses the.
      * @param value the value
@@ -42,33 +100,7 @@ public enum NoteEnum {
             return null;
         }
 
-        for (final NoteEnum note : values()) {
-            if (StringUtils.equalsIgnoreCase(value, note.englishName) || StringUtils.equalsIgnoreCase(value, note.italianName)) {
-                return note;
-            }
-        }
-
-        if ("D♭".equalsIgnoreCase(value) || "Re♭".equalsIgnoreCase(value)) {
-            return DO_DIESIS;
-        }
-
-        if ("E♭".equalsIgnoreCase(value) || "Mi♭".equalsIgnoreCase(value)) {
-            return RE_DIESIS;
-        }
-
-        if ("G♭".equalsIgnoreCase(value) || "Sol♭".equalsIgnoreCase(value)) {
-            return FA_DIESIS;
-        }
-
-        if ("A♭".equalsIgnoreCase(value) || "La♭".equalsIgnoreCase(value)) {
-            return SOL_DIESIS;
-        }
-
-        if ("B♭".equalsIgnoreCase(value) || "Si♭".equalsIgnoreCase(value)) {
-            return LA_DIESIS;
-        }
-
-        return null;
+        return PARSED.get(value.toLowerCase(Locale.ROOT));
     }
 
     /** The alteration. */
@@ -80,6 +112,9 @@ public enum NoteEnum {
     /** The italian name. */
     private String italianName;
 
+    /** The pitch class. */
+    private byte pitchClass;
+
     /**
      * Instantiates a new note enum.
      * @param englishName the english name
@@ -108,6 +143,14 @@ public enum NoteEnum {
         return italianName;
     }
 
+    /**
+     * Gets the pitch class, 0 for DO up to 11 for SI.
+     * @return the pitch class
+     */
+    public byte getPitchClass() {
+        return pitchClass;
+    }
+
     /**
      * Checks if is alteration.
      * @return the alteration
@@ -117,51 +160,21 @@ public enum NoteEnum {
     }
 
     /**
-     * Next note.
+     * Next note in the chromatic scale, SI is followed by DO.
      * @param alterations true to use alterations
      * @return the note enum
      */
     public NoteEnum next(final boolean alterations) {
-        final NoteEnum[] values = values();
-        for (byte i = 0; i < values.length; i++) {
-            if (values[i].equals(this)) {
-                for (byte j = (byte) (i + 1); j < values.length; j++) {
-                    if (alterations) {
-                        return values[j];
-                    }
-
-                    if (!values[j].isAlteration()) {
-                        return values[j];
-                    }
-                }
-            }
-        }
-
-        return DO;
+        return alterations ? NEXT[ordinal()] : NEXT_NATURAL[ordinal()];
     }
 
     /**
-     * Previous note.
+     * Previous note in the chromatic scale, DO is preceded by SI.
      * @param alterations true to use alterations
      * @return the note enum
      */
     public NoteEnum previous(final boolean alterations) {
-        final NoteEnum[] values = values();
-        for (byte i = (byte) (values.length - 1); i >= 0; i--) {
-            if (values[i].equals(this)) {
-                for (byte j = (byte) (i - 1); j >= 0; j--) {
-                    if (alterations) {
-                        return values[j];
-                    }
-
-                    if (!values[j].isAlteration()) {
-                        return values[j];
-                    }
-                }
-            }
-        }
-
-        return SI;
+        return alterations ? PREVIOUS[ordinal()] : PREVIOUS_NATURAL[ordinal()];
     }
 
     /*
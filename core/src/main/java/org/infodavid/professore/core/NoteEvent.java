@@ -0,0 +1,234 @@
+package org.infodavid.professore.core;
+
+import javax.sound.midi.ShortMessage;
+
+/**
+ * The Class NoteEvent.<br>
+ * Codec used to pack a note event into a primitive long, avoiding the allocation of a {@link Note} on the receive path.<br>
+ * Layout (from the lowest bit): key (7 bits), velocity (7 bits), channel (4 bits), pressed (1 bit), track (8 bits), tick or timestamp (36 bits).<br>
+ * The sign bit is never set on a valid event, so {@link #NONE} cannot collide with an encoded note.
+ */
+public final class NoteEvent {
+
+    /** The Constant CHANNEL_MASK. */
+    private static final long CHANNEL_MASK = 0x0F;
+
+    /** The Constant CHANNEL_SHIFT. */
+    private static final int CHANNEL_SHIFT = 14;
+
+    /** The Constant KEY_MASK. */
+    private static final long KEY_MASK = 0x7F;
+
+    /** The Constant MAX_TICK. */
+    public static final long MAX_TICK = (1L << 36) - 1;
+
+    /** The Constant NONE. */
+    public static final long NONE = -1L;
+
+    /** The Constant PRESSED_BIT. */
+    private static final long PRESSED_BIT = 1L << 18;
+
+    /** The Constant TICK_SHIFT. */
+    private static final int TICK_SHIFT = 27;
+
+    /** The Constant TRACK_MASK. */
+    private static final long TRACK_MASK = 0xFF;
+
+    /** The Constant TRACK_SHIFT. */
+    private static final int TRACK_SHIFT = 19;
+
+    /** The Constant VELOCITY_MASK. */
+    private static final long VELOCITY_MASK = 0x7F;
+
+    /** The Constant VELOCITY_SHIFT. */
+    private static final int VELOCITY_SHIFT = 7;
+
+    /**
+     * Encode.
+     * @param channel  the channel
+     * @param key      the key
+     * @param pressed  the pressed
+     * @param velocity the velocity
+     * @param track    the track
+     * @param tick     the tick or timestamp, truncated to {@link #MAX_TICK}
+     * @return the event
+     */
+    public static long encode(final byte channel, final byte key, final boolean pressed, final short velocity, final byte track, final long tick) {
+        long result = key & KEY_MASK;
+        result |= (velocity & VELOCITY_MASK) << VELOCITY_SHIFT;
+        result |= (channel & CHANNEL_MASK) << CHANNEL_SHIFT;
+        result |= (track & TRACK_MASK) << TRACK_SHIFT;
+        result |= (tick & MAX_TICK) << TICK_SHIFT;
+
+        if (velocity > 0 && pressed) {
+            result |= PRESSED_BIT;
+        }
+
+        return result;
+    }
+
+    /**
+     * Encode.
+     * @param message the message
+     * @return the event or {@link #NONE} if message is not a note ON or OFF
+     */
+    public static long encode(final ShortMessage message) {
+        return encode(message, (byte) 0, 0);
+    }
+
+    /**
+     * Encode.
+     * @param message the message
+     * @param track   the track
+     * @param tick    the tick or timestamp
+     * @return the event or {@link #NONE} if message is not a note ON or OFF
+     */
+    public static long encode(final ShortMessage message, final byte track, final long tick) {
+        final int command = message.getCommand();
+
+        if (command == ShortMessage.NOTE_ON) {
+            return encode((byte) message.getChannel(), (byte) message.getData1(), true, (short) message.getData2(), track, tick);
+        } else if (command == ShortMessage.NOTE_OFF) {
+            return encode((byte) message.getChannel(), (byte) message.getData1(), false, (short) message.getData2(), track, tick);
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Gets the base note.
+     * @param event the event
+     * @return the base note
+     */
+    public static NoteEnum getBaseNote(final long event) {
+        final byte key = getKey(event);
+
+        if (key <= 0) {
+            return null;
+        }
+
+        return MidiKeys.getBaseNote(key);
+    }
+
+    /**
+     * Gets the channel.
+     * @param event the event
+     * @return the channel
+     */
+    public static byte getChannel(final long event) {
+        return (byte) (event >>> CHANNEL_SHIFT & CHANNEL_MASK);
+    }
+
+    /**
+     * Gets the key.
+     * @param event the event
+     * @return the key
+     */
+    public static byte getKey(final long event) {
+        return (byte) (event & KEY_MASK);
+    }
+
+    /**
+     * Gets the octave.
+     * @param event the event
+     * @return the octave
+     */
+    public static byte getOctave(final long event) {
+        final byte key = getKey(event);
+
+        if (key <= 0) {
+            return 0;
+        }
+
+        return MidiKeys.getOctave(key);
+    }
+
+    /**
+     * Gets the tick or timestamp.
+     * @param event the event
+     * @return the tick
+     */
+    public static long getTick(final long event) {
+        return event >>> TICK_SHIFT & MAX_TICK;
+    }
+
+    /**
+     * Gets the track.
+     * @param event the event
+     * @return the track
+     */
+    public static byte getTrack(final long event) {
+        return (byte) (event >>> TRACK_SHIFT & TRACK_MASK);
+    }
+
+    /**
+     * Gets the velocity.
+     * @param event the event
+     * @return the velocity
+     */
+    public static short getVelocity(final long event) {
+        return (short) (event >>> VELOCITY_SHIFT & VELOCITY_MASK);
+    }
+
+    /**
+     * Checks if is a note event.
+     * @param event the event
+     * @return true, if is a note event
+     */
+    public static boolean isNote(final long event) {
+        return event >= 0;
+    }
+
+    /**
+     * Checks if is pressed.
+     * @param event the event
+     * @return true, if is pressed
+     */
+    public static boolean isPressed(final long event) {
+        return (event & PRESSED_BIT) != 0;
+    }
+
+    /**
+     * Copy the event into the given note.
+     * @param event  the event
+     * @param target the target note
+     * @return the note
+     */
+    public static Note toNote(final long event, final Note target) {
+        return target.setChannel(getChannel(event)).setKey(getKey(event)).setPressed(isPressed(event)).setVelocity(getVelocity(event)).setTrack(getTrack(event)).setOctave(getOctave(event)).setBaseNote(getBaseNote(event));
+    }
+
+    /**
+     * Returns a string representation of the event.
+     * @param event the event
+     * @return the string
+     */
+    public static String toString(final long event) {
+        if (!isNote(event)) {
+            return "NoteEvent[NONE]";
+        }
+
+        return "NoteEvent[channel=" + getChannel(event) + ",key=" + getKey(event) + ",velocity=" + getVelocity(event) + ",pressed=" + isPressed(event) + ",track=" + getTrack(event) + ",tick=" + getTick(event) + ']';
+    }
+
+    /**
+     * Returns a copy of the event with the given pressed state.
+     * @param event   the event
+     * @param pressed the pressed
+     * @return the event
+     */
+    public static long withPressed(final long event, final boolean pressed) {
+        if (pressed) {
+            return event | PRESSED_BIT;
+        }
+
+        return event & ~PRESSED_BIT;
+    }
+
+    /**
+     * Instantiates a new note event.
+     */
+    private NoteEvent() {
+        super();
+    }
+}
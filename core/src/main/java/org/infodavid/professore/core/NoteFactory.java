@@ -33,11 +33,20 @@ public class NoteFactory extends BasePooledObjectFactory<Note> {
      */
     @Override
     public void passivateObject(final PooledObject<Note> pooledObject) {
-        final Note obj = pooledObject.getObject();
+        passivate(pooledObject.getObject());
+    }
+
+    /**
+     * Passivate the note.
+     * @param obj the note
+     */
+    static void passivate(final Note obj) {
         obj.setChannel((byte) 0);
         obj.setKey((byte) 0);
         obj.setOctave((byte) 0);
         obj.setBaseNote(null);
         obj.setTrack((byte) 0);
+        obj.setVelocity((short) 0);
+        obj.setPressed(true);
     }
 }
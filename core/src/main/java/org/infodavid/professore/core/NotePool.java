@@ -1,19 +1,41 @@
 package org.infodavid.professore.core;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.sound.midi.ShortMessage;
 
-import org.apache.commons.pool2.impl.SoftReferenceObjectPool;
-import org.infodavid.professore.core.exception.PoolException;
+import org.apache.commons.pool2.ObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class NotePool.
+ * The Class NotePool.<br>
+ * Each thread borrows from and returns to its own magazine of notes without any lock.<br>
+ * Magazines are exchanged with a shared lock-free depot, refilled by a single background thread when the number of idle objects drops under the prefill limit.<br>
+ * Virtual threads are short-lived and do not keep a magazine, they exchange single notes with a shared lock-free queue fed by the depot.<br>
+ * A borrowed note is a lease which must be closed, or given back using {@link #returnObject(Note)}, once the caller does not use it anymore.
  */
-public class NotePool extends SoftReferenceObjectPool<Note> {
+public class NotePool implements ObjectPool<Note> {
+
+    /**
+     * The Class Magazine.
+     */
+    private static final class Magazine {
+
+        /** The notes. */
+        private Note[] notes = new Note[MAGAZINE_SIZE];
+
+        /** The size. */
+        private int size;
+    }
 
     /** The Constant INSTANCE. */
     private static final NotePool INSTANCE;
@@ -21,6 +43,9 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(NotePool.class);
 
+    /** The Constant MAGAZINE_SIZE. */
+    public static final int MAGAZINE_SIZE = 16;
+
     static {
         INSTANCE = new NotePool((short) 64);
     }
@@ -33,23 +58,78 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
         return INSTANCE;
     }
 
-    /** The check lock. */
-    private final Lock checkLock = new ReentrantLock();
+    /** The borrow sites, used when leak tracking is enabled. */
+    private final Map<Note, Throwable> borrowSites = new IdentityHashMap<>();
+
+    /** The borrow count. */
+    private final LongAdder borrowCount = new LongAdder();
+
+    /** The closed. */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /** The depot of full magazines. */
+    private final Queue<Note[]> depot = new ConcurrentLinkedQueue<>();
+
+    /** The depot size. */
+    private final AtomicInteger depotSize = new AtomicInteger();
+
+    /** The factory. */
+    private final NoteFactory factory = new NoteFactory();
+
+    /** The leak tracking. */
+    private volatile boolean leakTracking;
+
+    /** The local magazines. */
+    private final ThreadLocal<Magazine> local = ThreadLocal.withInitial(Magazine::new);
+
+    /** The loose notes, borrowed and returned by the virtual threads. */
+    private final Queue<Note> loose = new ConcurrentLinkedQueue<>();
+
+    /** The loose size. */
+    private final AtomicInteger looseSize = new AtomicInteger();
+
+    /** The miss count. */
+    private final LongAdder missCount = new LongAdder();
 
     /** The prefill count. */
-    private short prefillCount;
+    private volatile short prefillCount;
 
     /** The prefill limit. */
-    private float prefillLimit = 0.10f;
+    private volatile float prefillLimit = 0.10f;
+
+    /** The refill count. */
+    private final LongAdder refillCount = new LongAdder();
+
+    /** The refill requested. */
+    private final AtomicBoolean refillRequested = new AtomicBoolean(false);
+
+    /** The refiller. */
+    private final Thread refiller;
+
+    /** The release count. */
+    private final LongAdder releaseCount = new LongAdder();
 
     /**
      * Instantiates a new pool.
      * @param prefillCount the prefill count
      */
     private NotePool(final short prefillCount) {
-        super(new NoteFactory());
+        super();
         this.prefillCount = prefillCount;
         addObjects(prefillCount);
+        // the profile of the shared pool is defined by the system property, the refiller mostly waits
+        refiller = ThreadProfile.getDefault().newThreadFactory(NotePool.class.getSimpleName() + "-refiller").newThread(this::refill);
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#addObject()
+     */
+    @Override
+    public void addObject() {
+        returnObject(factory.create());
     }
 
     /*
@@ -58,26 +138,45 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
      */
     @Override
     public void addObjects(final int count) {
-        try {
-            super.addObjects(count);
-        } catch (final Exception e) {
-            throw new PoolException(e);
+        for (int i = 0; i < count; i += MAGAZINE_SIZE) {
+            depot.offer(newMagazine());
+            depotSize.incrementAndGet();
         }
     }
 
     /*
      * (non-javadoc)
-     * @see org.apache.commons.pool2.impl.GenericObjectPool#borrowObject()
+     * @see org.apache.commons.pool2.ObjectPool#borrowObject()
      */
     @Override
-    public synchronized Note borrowObject() {
-        try {
-            return super.borrowObject();
-        } catch (final Exception e) {
-            throw new PoolException(e);
-        } finally {
-            prefill();
+    public Note borrowObject() {
+        borrowCount.increment();
+
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+            return lease(borrowLoose());
         }
+
+        final Magazine magazine = local.get();
+
+        if (magazine.size > 0) {
+            final Note result = magazine.notes[--magazine.size];
+            magazine.notes[magazine.size] = null;
+
+            return lease(result);
+        }
+
+        final Note[] full = pollDepot();
+
+        if (full == null) {
+            return lease(factory.create());
+        }
+
+        magazine.notes = full;
+        magazine.size = full.length - 1;
+        final Note result = full[magazine.size];
+        full[magazine.size] = null;
+
+        return lease(result);
     }
 
     /**
@@ -98,13 +197,26 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
             result.setOctave((byte) 0);
             result.setBaseNote(null);
         } else {
-            result.setOctave((byte) (key / 12 - 1));
-            result.setBaseNote(NoteEnum.values()[key % 12]);
+            result.setOctave(MidiKeys.getOctave(key));
+            result.setBaseNote(MidiKeys.getBaseNote(key));
         }
 
         return result;
     }
 
+    /**
+     * Borrow object.
+     * @param event the event packed using {@link NoteEvent}
+     * @return the note or null if event is {@link NoteEvent#NONE}
+     */
+    public Note borrowObject(final long event) {
+        if (!NoteEvent.isNote(event)) {
+            return null;
+        }
+
+        return NoteEvent.toNote(event, borrowObject());
+    }
+
     /**
      * Borrow object.
      * @param message the message
@@ -124,6 +236,68 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
         return null;
     }
 
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#clear()
+     */
+    @Override
+    public void clear() {
+        while (depot.poll() != null) {
+            depotSize.decrementAndGet();
+        }
+
+        while (loose.poll() != null) {
+            looseSize.decrementAndGet();
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#close()
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            LockSupport.unpark(refiller);
+            clear();
+        }
+    }
+
+    /**
+     * Gets the number of borrowed objects since the creation of the pool.
+     * @return the count
+     */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * Gets the number of borrowed objects which had to be created on the caller thread because the depot was empty.
+     * @return the count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#getNumActive()
+     */
+    @Override
+    public int getNumActive() {
+        return (int) Math.max(0, borrowCount.sum() - releaseCount.sum());
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#getNumIdle()
+     */
+    @Override
+    public int getNumIdle() {
+        // objects cached by the threads are not counted
+        return depotSize.get() * MAGAZINE_SIZE + looseSize.get();
+    }
+
     /**
      * Gets the prefill count.
      * @return the prefillCount
@@ -140,6 +314,112 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
         return prefillLimit;
     }
 
+    /**
+     * Gets the number of magazines created by the refiller.
+     * @return the count
+     */
+    public long getRefillCount() {
+        return refillCount.sum();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#invalidateObject(java.lang.Object)
+     */
+    @Override
+    public void invalidateObject(final Note obj) {
+        if (obj != null && release(obj)) {
+            releaseCount.increment();
+        }
+    }
+
+    /**
+     * Checks if leak tracking is enabled.
+     * @return true, if leak tracking is enabled
+     */
+    public boolean isLeakTracking() {
+        return leakTracking;
+    }
+
+    /**
+     * Logs the notes borrowed while leak tracking was enabled and not yet returned, with their borrow sites.
+     * @return the number of leaked notes
+     */
+    public int reportLeaks() {
+        final Map<Note, Throwable> leaks;
+
+        synchronized (borrowSites) {
+            leaks = new IdentityHashMap<>(borrowSites);
+        }
+
+        for (final Map.Entry<Note, Throwable> entry : leaks.entrySet()) {
+            LOGGER.warn("Note not returned to the pool: {}", entry.getKey(), entry.getValue());
+        }
+
+        return leaks.size();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.apache.commons.pool2.ObjectPool#returnObject(java.lang.Object)
+     */
+    @Override
+    public void returnObject(final Note obj) {
+        if (obj == null || !release(obj)) {
+            return;
+        }
+
+        releaseCount.increment();
+        NoteFactory.passivate(obj);
+
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+            returnLoose(obj);
+
+            return;
+        }
+
+        final Magazine magazine = local.get();
+
+        if (magazine.size == MAGAZINE_SIZE) {
+            if (depotSize.get() >= getDepotCapacity()) {
+                // the depot is full, the object is left to the garbage collector
+                return;
+            }
+
+            depot.offer(magazine.notes);
+            depotSize.incrementAndGet();
+            magazine.notes = new Note[MAGAZINE_SIZE];
+            magazine.size = 0;
+        }
+
+        magazine.notes[magazine.size++] = obj;
+    }
+
+    /**
+     * Return the objects to the pool.
+     * @param objects the objects
+     */
+    public void returnObjects(final Collection<Note> objects) {
+        for (final Note obj : objects) {
+            returnObject(obj);
+        }
+    }
+
+    /**
+     * Sets the leak tracking, when enabled the borrow site of each note is recorded until the note is returned.<br>
+     * This mode is intended for debugging as it captures a stack trace for each borrowed note.
+     * @param leakTracking true to enable leak tracking
+     */
+    public void setLeakTracking(final boolean leakTracking) {
+        this.leakTracking = leakTracking;
+
+        if (!leakTracking) {
+            synchronized (borrowSites) {
+                borrowSites.clear();
+            }
+        }
+    }
+
     /**
      * Sets the prefill count.
      * @param prefillCount the prefillCount to set
@@ -157,41 +437,190 @@ public class NotePool extends SoftReferenceObjectPool<Note> {
     }
 
     /**
-     * Prefill.
+     * Borrow a loose note, the remaining notes of a magazine taken from the depot become loose.
+     * @return the note
      */
-    private void prefill() {
-        final float value = getNumIdle() / (float) prefillCount;
+    private Note borrowLoose() {
+        final Note result = loose.poll();
 
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Available objects: {}%", String.valueOf(value * 100));
+        if (result != null) {
+            looseSize.decrementAndGet();
+
+            return result;
         }
 
-        if (value < prefillLimit) {
-            new Thread(() -> {
-                checkLock.lock();
+        final Note[] full = pollDepot();
 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Checking number of available objects");
-                }
+        if (full == null) {
+            return factory.create();
+        }
+
+        for (int i = 1; i < full.length; i++) {
+            loose.offer(full[i]);
+        }
+
+        looseSize.addAndGet(full.length - 1);
+
+        return full[0];
+    }
+
+    /**
+     * Gets the depot capacity in magazines.
+     * @return the capacity
+     */
+    private int getDepotCapacity() {
+        return Math.max(1, 2 * prefillCount / MAGAZINE_SIZE);
+    }
 
-                try {
-                    final int count = prefillCount - getNumIdle();
+    /**
+     * Gets the refill threshold in magazines.
+     * @return the threshold
+     */
+    private int getRefillThreshold() {
+        return (int) Math.ceil(prefillLimit * prefillCount / MAGAZINE_SIZE);
+    }
 
-                    if (count > 0) {
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("Filling with {} objects", String.valueOf(count));
-                        }
+    /**
+     * Gets the refill target in magazines.
+     * @return the target
+     */
+    private int getRefillTarget() {
+        return Math.max(1, (prefillCount + MAGAZINE_SIZE - 1) / MAGAZINE_SIZE);
+    }
 
-                        addObjects(count);
-                    }
-                } finally {
-                    checkLock.unlock();
+    /**
+     * Lease the note.
+     * @param obj the note
+     * @return the note
+     */
+    private Note lease(final Note obj) {
+        if (!obj.lease()) {
+            LOGGER.warn("Note already leased: {}", obj);
+        }
 
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("Check completed");
-                    }
-                }
-            }).start();
+        if (leakTracking) {
+            synchronized (borrowSites) {
+                borrowSites.put(obj, new Throwable("Borrow site"));
+            }
         }
+
+        return obj;
+    }
+
+    /**
+     * New magazine.
+     * @return the full magazine
+     */
+    private Note[] newMagazine() {
+        final Note[] result = new Note[MAGAZINE_SIZE];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = factory.create();
+        }
+
+        return result;
+    }
+
+    /**
+     * Poll a full magazine from the depot, a refill is requested when the depot is empty or drops under the refill threshold.
+     * @return the magazine or null if the depot is empty
+     */
+    private Note[] pollDepot() {
+        final Note[] result = depot.poll();
+
+        if (result == null) {
+            missCount.increment();
+            requestRefill();
+
+            return null;
+        }
+
+        if (depotSize.decrementAndGet() < getRefillThreshold()) {
+            requestRefill();
+        }
+
+        return result;
+    }
+
+    /**
+     * Refill loop, filling the depot up to the prefill count each time the refill threshold is crossed.
+     */
+    private void refill() {
+        LOGGER.debug("Refiller started");
+
+        while (!closed.get()) {
+            if (!refillRequested.get()) {
+                LockSupport.park(this);
+
+                continue;
+            }
+
+            final int target = getRefillTarget();
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Filling depot from {} to {} magazines", String.valueOf(depotSize.get()), String.valueOf(target));
+            }
+
+            while (depotSize.get() < target && !closed.get()) {
+                depot.offer(newMagazine());
+                depotSize.incrementAndGet();
+                refillCount.increment();
+            }
+
+            refillRequested.set(false);
+            // the requests made since the end of the fill were ignored, the depot is checked again once the flag is cleared
+            final int size = depotSize.get();
+
+            if (size == 0 || size < getRefillThreshold()) {
+                refillRequested.set(true);
+            }
+        }
+
+        LOGGER.debug("Refiller stopped");
+    }
+
+    /**
+     * Release the note.
+     * @param obj the note
+     * @return true, if the note was leased
+     */
+    private boolean release(final Note obj) {
+        // only one of the threads returning the same note succeeds
+        if (!obj.release()) {
+            LOGGER.debug("Note already returned or not borrowed from the pool: {}", obj);
+
+            return false;
+        }
+
+        if (leakTracking) {
+            synchronized (borrowSites) {
+                borrowSites.remove(obj);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Request a refill, the refiller is only woken up once until the refill completes.
+     */
+    private void requestRefill() {
+        if (!closed.get() && refillRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(refiller);
+        }
+    }
+
+    /**
+     * Return a loose note, the loose notes are bounded by the capacity of the depot.
+     * @param obj the note
+     */
+    private void returnLoose(final Note obj) {
+        if (looseSize.get() >= getDepotCapacity() * MAGAZINE_SIZE) {
+            // the queue is full, the object is left to the garbage collector
+            return;
+        }
+
+        loose.offer(obj);
+        looseSize.incrementAndGet();
     }
 }
@@ -0,0 +1,498 @@
+package org.infodavid.professore.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Class NoteSequence.<br>
+ * Struct of arrays storing note events in growable primitive arrays, each event costs 13 bytes instead of a {@link Note} object and its reference.<br>
+ * This class is not thread safe.
+ */
+public class NoteSequence {
+
+    /**
+     * The Class Cursor.<br>
+     * Iterates over the events without any allocation, {@link #next()} must be called before reading the first event.
+     */
+    public final class Cursor {
+
+        /** The index. */
+        private int index = -1;
+
+        /**
+         * Gets the channel.
+         * @return the channel
+         */
+        public byte getChannel() {
+            return channels[index];
+        }
+
+        /**
+         * Gets the event packed using {@link NoteEvent}.
+         * @return the event
+         */
+        public long getEvent() {
+            return NoteSequence.this.getEvent(index);
+        }
+
+        /**
+         * Gets the index.
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the key.
+         * @return the key
+         */
+        public byte getKey() {
+            return keys[index];
+        }
+
+        /**
+         * Gets the tick.
+         * @return the tick
+         */
+        public long getTick() {
+            return ticks[index];
+        }
+
+        /**
+         * Gets the track.
+         * @return the track
+         */
+        public byte getTrack() {
+            return tracks[index];
+        }
+
+        /**
+         * Gets the velocity.
+         * @return the velocity
+         */
+        public short getVelocity() {
+            return velocities[index];
+        }
+
+        /**
+         * Checks if is pressed.
+         * @return true, if is pressed
+         */
+        public boolean isPressed() {
+            return pressed[index];
+        }
+
+        /**
+         * Move to the next event.
+         * @return true, if an event is available
+         */
+        public boolean next() {
+            return ++index < size;
+        }
+
+        /**
+         * Reset the cursor before the first event.
+         */
+        public void reset() {
+            index = -1;
+        }
+    }
+
+    /** The Constant DEFAULT_CAPACITY. */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Merge the sequences sorted by tick into a new sequence sorted by tick.<br>
+     * Events having the same tick keep the order of the sequences in the arguments.
+     * @param sequences the sequences
+     * @return the merged sequence
+     */
+    public static NoteSequence merge(final NoteSequence... sequences) {
+        int capacity = 0;
+
+        for (final NoteSequence sequence : sequences) {
+            capacity += sequence.size;
+        }
+
+        final NoteSequence result = new NoteSequence(capacity);
+        // binary min heap of the indexes of the sequences, ordered by their current tick
+        final int[] heap = new int[sequences.length];
+        final int[] positions = new int[sequences.length];
+        int heapSize = 0;
+
+        for (int i = 0; i < sequences.length; i++) {
+            if (sequences[i].size > 0) {
+                heap[heapSize++] = i;
+            }
+        }
+
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, sequences, positions);
+        }
+
+        while (heapSize > 0) {
+            final int s = heap[0];
+            final NoteSequence source = sequences[s];
+            final int p = positions[s]++;
+            result.ticks[result.size] = source.ticks[p];
+            result.tracks[result.size] = source.tracks[p];
+            result.channels[result.size] = source.channels[p];
+            result.keys[result.size] = source.keys[p];
+            result.velocities[result.size] = source.velocities[p];
+            result.pressed[result.size] = source.pressed[p];
+            result.size++;
+
+            if (positions[s] == source.size) {
+                heap[0] = heap[--heapSize];
+            }
+
+            siftDown(heap, heapSize, 0, sequences, positions);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compare the current events of two sequences by tick, then by index of sequence.
+     * @param a         the index of the first sequence
+     * @param b         the index of the second sequence
+     * @param sequences the sequences
+     * @param positions the current positions
+     * @return true, if a is before b
+     */
+    private static boolean before(final int a, final int b, final NoteSequence[] sequences, final int[] positions) {
+        final long tickA = sequences[a].ticks[positions[a]];
+        final long tickB = sequences[b].ticks[positions[b]];
+
+        return tickA < tickB || tickA == tickB && a < b;
+    }
+
+    /**
+     * Sift down the element of the heap.
+     * @param heap      the heap
+     * @param heapSize  the heap size
+     * @param index     the index of the element
+     * @param sequences the sequences
+     * @param positions the current positions
+     */
+    private static void siftDown(final int[] heap, final int heapSize, final int index, final NoteSequence[] sequences, final int[] positions) {
+        int i = index;
+
+        while (true) {
+            final int left = 2 * i + 1;
+
+            if (left >= heapSize) {
+                return;
+            }
+
+            final int right = left + 1;
+            final int child = right < heapSize && before(heap[right], heap[left], sequences, positions) ? right : left;
+
+            if (!before(heap[child], heap[i], sequences, positions)) {
+                return;
+            }
+
+            final int tmp = heap[i];
+            heap[i] = heap[child];
+            heap[child] = tmp;
+            i = child;
+        }
+    }
+
+    /** The channels. */
+    private byte[] channels;
+
+    /** The keys. */
+    private byte[] keys;
+
+    /** The pressed. */
+    private boolean[] pressed;
+
+    /** The size. */
+    private int size;
+
+    /** The ticks. */
+    private long[] ticks;
+
+    /** The tracks. */
+    private byte[] tracks;
+
+    /** The velocities. */
+    private byte[] velocities;
+
+    /**
+     * Instantiates a new note sequence.
+     */
+    public NoteSequence() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new note sequence.
+     * @param capacity the initial capacity
+     */
+    public NoteSequence(final int capacity) {
+        super();
+        final int length = Math.max(1, capacity);
+        channels = new byte[length];
+        keys = new byte[length];
+        pressed = new boolean[length];
+        ticks = new long[length];
+        tracks = new byte[length];
+        velocities = new byte[length];
+    }
+
+    /**
+     * Instantiates a new note sequence, copy of the events of the source.
+     * @param source the source
+     */
+    public NoteSequence(final NoteSequence source) {
+        super();
+        final int length = Math.max(1, source.size);
+        channels = Arrays.copyOf(source.channels, length);
+        keys = Arrays.copyOf(source.keys, length);
+        pressed = Arrays.copyOf(source.pressed, length);
+        ticks = Arrays.copyOf(source.ticks, length);
+        tracks = Arrays.copyOf(source.tracks, length);
+        velocities = Arrays.copyOf(source.velocities, length);
+        size = source.size;
+    }
+
+    /**
+     * Adds the event.
+     * @param tick     the tick
+     * @param track    the track
+     * @param channel  the channel
+     * @param key      the key
+     * @param velocity the velocity
+     * @param pressed  the pressed
+     */
+    public void add(final long tick, final byte track, final byte channel, final byte key, final short velocity, final boolean pressed) {
+        if (size == ticks.length) {
+            grow(size + 1);
+        }
+
+        ticks[size] = tick;
+        tracks[size] = track;
+        channels[size] = channel;
+        keys[size] = key;
+        velocities[size] = (byte) velocity;
+        this.pressed[size] = velocity > 0 && pressed;
+        size++;
+    }
+
+    /**
+     * Adds the event.
+     * @param event the event packed using {@link NoteEvent}, the tick is taken from the event
+     */
+    public void add(final long event) {
+        if (!NoteEvent.isNote(event)) {
+            return;
+        }
+
+        add(NoteEvent.getTick(event), NoteEvent.getTrack(event), NoteEvent.getChannel(event), NoteEvent.getKey(event), NoteEvent.getVelocity(event), NoteEvent.isPressed(event));
+    }
+
+    /**
+     * Returns a view of the events as notes, each call to get creates a new note.
+     * @return the list
+     */
+    public List<Note> asNotes() {
+        return new AbstractList<>() {
+            @Override
+            public Note get(final int index) {
+                return toNote(index, new Note());
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Clear the sequence, the capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Creates a new cursor.
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Ensure the capacity.
+     * @param capacity the capacity
+     */
+    public void ensureCapacity(final int capacity) {
+        if (capacity > ticks.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Gets the channel.
+     * @param index the index
+     * @return the channel
+     */
+    public byte getChannel(final int index) {
+        checkIndex(index);
+
+        return channels[index];
+    }
+
+    /**
+     * Gets the event packed using {@link NoteEvent}.
+     * @param index the index
+     * @return the event
+     */
+    public long getEvent(final int index) {
+        checkIndex(index);
+
+        return NoteEvent.encode(channels[index], keys[index], pressed[index], velocities[index], tracks[index], ticks[index]);
+    }
+
+    /**
+     * Gets the key.
+     * @param index the index
+     * @return the key
+     */
+    public byte getKey(final int index) {
+        checkIndex(index);
+
+        return keys[index];
+    }
+
+    /**
+     * Gets the tick.
+     * @param index the index
+     * @return the tick
+     */
+    public long getTick(final int index) {
+        checkIndex(index);
+
+        return ticks[index];
+    }
+
+    /**
+     * Gets the track.
+     * @param index the index
+     * @return the track
+     */
+    public byte getTrack(final int index) {
+        checkIndex(index);
+
+        return tracks[index];
+    }
+
+    /**
+     * Gets the velocity.
+     * @param index the index
+     * @return the velocity
+     */
+    public short getVelocity(final int index) {
+        checkIndex(index);
+
+        return velocities[index];
+    }
+
+    /**
+     * Checks if is empty.
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if is pressed.
+     * @param index the index
+     * @return true, if is pressed
+     */
+    public boolean isPressed(final int index) {
+        checkIndex(index);
+
+        return pressed[index];
+    }
+
+    /**
+     * Size.
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the event into the given note.
+     * @param index  the index
+     * @param target the target note
+     * @return the note
+     */
+    public Note toNote(final int index, final Note target) {
+        return NoteEvent.toNote(getEvent(index), target);
+    }
+
+    /**
+     * Borrow a note from the pool for each event.
+     * @param pool the pool
+     * @return the notes, to return to the pool once processed
+     */
+    public List<Note> toNotes(final NotePool pool) {
+        final Note[] results = new Note[size];
+
+        for (int i = 0; i < size; i++) {
+            results[i] = toNote(i, pool.borrowObject());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Trim the arrays to the size of the sequence.
+     */
+    public void trimToSize() {
+        if (size < ticks.length) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    /**
+     * Check index.
+     * @param index the index
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Grow the arrays by half of their length at least.
+     * @param minCapacity the minimum capacity
+     */
+    private void grow(final int minCapacity) {
+        resize(Math.max(minCapacity, ticks.length + (ticks.length >> 1) + 1));
+    }
+
+    /**
+     * Resize the arrays.
+     * @param length the length
+     */
+    private void resize(final int length) {
+        channels = Arrays.copyOf(channels, length);
+        keys = Arrays.copyOf(keys, length);
+        pressed = Arrays.copyOf(pressed, length);
+        ticks = Arrays.copyOf(ticks, length);
+        tracks = Arrays.copyOf(tracks, length);
+        velocities = Arrays.copyOf(velocities, length);
+    }
+}
@@ -0,0 +1,87 @@
+package org.infodavid.professore.core;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Enum ThreadProfile.<br>
+ * Kind of the threads used for the blocking parts of the players: waiting for the play list, loading the files, calling the listeners and refilling the pools.<br>
+ * The audio loops always use dedicated platform threads. The virtual threads require Java 21, the platform threads are used instead on older versions.
+ */
+public enum ThreadProfile {
+
+    /** The platform threads. */
+    PLATFORM,
+
+    /** The virtual threads, on Java 21 and later. */
+    VIRTUAL;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadProfile.class);
+
+    /** The Constant PROPERTY, system property defining the default profile, platform or virtual. */
+    public static final String PROPERTY = "org.infodavid.professore.threads";
+
+    /**
+     * Gets the default profile, defined by the system property {@link #PROPERTY}.
+     * @return the default profile, {@link #PLATFORM} if the property is not set
+     */
+    public static ThreadProfile getDefault() {
+        final String value = System.getProperty(PROPERTY);
+
+        if (value == null || value.isEmpty()) {
+            return PLATFORM;
+        }
+
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+            LOGGER.warn("Invalid thread profile: {}, using platform threads", value);
+
+            return PLATFORM;
+        }
+    }
+
+    /**
+     * Checks if the profile is available on this runtime.
+     * @return true, if available
+     */
+    public boolean isAvailable() {
+        return this == PLATFORM || VirtualThreads.isSupported();
+    }
+
+    /**
+     * New executor starting a new thread for each task, suitable for blocking tasks using the virtual threads.
+     * @param name the prefix of the names of the threads
+     * @return the executor
+     */
+    public Executor newExecutor(final String name) {
+        final ThreadFactory factory = newThreadFactory(name);
+
+        return command -> factory.newThread(command).start();
+    }
+
+    /**
+     * New thread factory, the platform threads are not daemon threads.
+     * @param name the prefix of the names of the threads
+     * @return the factory
+     */
+    public ThreadFactory newThreadFactory(final String name) {
+        if (this == VIRTUAL) {
+            if (VirtualThreads.isSupported()) {
+                return VirtualThreads.newFactory(name);
+            }
+
+            LOGGER.warn("Virtual threads are not supported by this runtime, using platform threads for: {}", name);
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+
+        return runnable -> new Thread(runnable, name + '-' + counter.getAndIncrement());
+    }
+}
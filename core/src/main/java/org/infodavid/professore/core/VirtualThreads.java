@@ -0,0 +1,44 @@
+package org.infodavid.professore.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The Class VirtualThreads.<br>
+ * Factory of the virtual threads, this version is used before Java 21 and does not support them.<br>
+ * The multi-release archive contains the version used on Java 21 and later.
+ */
+final class VirtualThreads {
+
+    /**
+     * Checks if the virtual threads are supported.
+     * @return false
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Checks if the thread is virtual.
+     * @param thread the thread
+     * @return false
+     */
+    static boolean isVirtual(final Thread thread) {
+        return false;
+    }
+
+    /**
+     * New factory.
+     * @param name the prefix of the names of the threads
+     * @return the factory
+     */
+    static ThreadFactory newFactory(final String name) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21, cannot create: " + name);
+    }
+
+    /**
+     * Instantiates a new virtual threads.
+     */
+    private VirtualThreads() {
+        super();
+    }
+}
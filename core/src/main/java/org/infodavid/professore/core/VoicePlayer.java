@@ -1,35 +1,59 @@
 package org.infodavid.professore.core;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.EnumMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.BooleanControl;
-import javax.sound.sampled.DataLine;
-import javax.sound.sampled.FloatControl;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.SourceDataLine;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+
+import org.infodavid.professore.core.audio.AudioSink;
+import org.infodavid.professore.core.audio.Interpolation;
+import org.infodavid.professore.core.audio.KeySampleBank;
+import org.infodavid.professore.core.audio.LatencyHistogram;
+import org.infodavid.professore.core.audio.LineAudioSink;
+import org.infodavid.professore.core.audio.SampleBank;
+import org.infodavid.professore.core.audio.TriggerRing;
+import org.infodavid.professore.core.audio.VoiceMixer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class VoicePlayer.
+ * The Class VoicePlayer.<br>
+ * The player measures the latency of the notes, the queue depth, the blocks written and the underruns of the sink, see {@link #getStats()}.
  */
-public class VoicePlayer implements Closeable, Runnable {
+public class VoicePlayer implements Closeable, Runnable, VoicePlayerMXBean {
+
+    /** The Constant DEFAULT_VOLUME, in percent. */
+    private static final byte DEFAULT_VOLUME = 100;
+
+    /** The Constant IDLE_WAIT, in nanoseconds, maximum wait of the audio thread when nothing is playing. */
+    private static final long IDLE_WAIT = TimeUnit.SECONDS.toNanos(1);
+
+    /** The Constant LINE_BLOCKS, number of blocks buffered by the sink. */
+    private static final int LINE_BLOCKS = 4;
+
+    /** The Constant MICROSECOND, in nanoseconds. */
+    private static final long MICROSECOND = TimeUnit.MICROSECONDS.toNanos(1);
 
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(VoicePlayer.class);
@@ -37,57 +61,150 @@ public class VoicePlayer implements Closeable, Runnable {
     /** The Constant RESOURCES_PATH. */
     private static final String RESOURCES_PATH = "/sounds/"; // NOSONAR Keep as it is
 
+    /** The Constant TRIGGERS_CAPACITY. */
+    private static final int TRIGGERS_CAPACITY = 256;
+
+    /** The Constant WARM_UP_BLOCKS, number of blocks mixed to compile the mixing path before the first note. */
+    private static final int WARM_UP_BLOCKS = 512;
+
+    /**
+     * Create and open a player asynchronously using the default line, the keys of the recorded samples are loaded in advance.
+     * @return the future completed when the first note can be played at steady state latency
+     * @see #openAsync(AudioSink, int, int, Executor)
+     */
+    public static CompletableFuture<VoicePlayer> openAsync() {
+        final int from = MidiKeys.getKey(NoteEnum.values()[0], KeySampleBank.DEFAULT_OCTAVE);
+
+        return openAsync(null, from, from + NoteEnum.values().length - 1, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create and open a player asynchronously.<br>
+     * The samples are mapped, then the keys are loaded (and resampled if needed) in parallel while the audio thread opens and primes the sink and while the mixing path is warmed up.
+     * @param sink     the sink, null to use a JavaSound line
+     * @param fromKey  the first MIDI key to load in advance
+     * @param toKey    the last MIDI key to load in advance, inclusive
+     * @param executor the executor used to load the samples
+     * @return the future completed when the first note can be played at steady state latency, the player is closed if the initialization fails
+     */
+    public static CompletableFuture<VoicePlayer> openAsync(final AudioSink sink, final int fromKey, final int toKey, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new VoicePlayer();
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).thenCompose(player -> {
+            final int from = Math.max(0, fromKey);
+            final int to = Math.min(MidiKeys.COUNT - 1, toKey);
+            final CompletableFuture<?>[] stages = new CompletableFuture<?>[Math.max(0, to - from + 1) + 2];
+            int i = 0;
+
+            for (int key = from; key <= to; key++) {
+                final int k = key;
+                stages[i++] = CompletableFuture.runAsync(() -> player.keys.preload(k, k), executor);
+            }
+
+            stages[i++] = CompletableFuture.runAsync(player::warmUp, executor);
+            player.setSink(sink);
+
+            try {
+                player.open();
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+
+            stages[i] = player.getReady();
+
+            return CompletableFuture.allOf(stages).handle((v, e) -> {
+                if (e != null) {
+                    player.close();
+
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                }
+
+                return player;
+            });
+        });
+    }
+
+    /** The bank. */
+    private final SampleBank bank;
+
+    /** The number of blocks written. */
+    private final LongAdder blockCount = new LongAdder();
+
+    /** The number of frames buffered by the sink after the last write. */
+    private volatile long bufferedFrames = -1;
+
+    /** The dropped count. */
+    private final LongAdder droppedCount = new LongAdder();
+
     /** The format. */
-    private AudioFormat format;
+    private final AudioFormat format;
+
+    /** The pan, from -1 (left) to 1 (right). */
+    private volatile float pan;
 
-    /** The opened. */
-    private final AtomicBoolean opened = new AtomicBoolean(false);
+    /** The future completed by the audio thread when the sink is opened and primed. */
+    private volatile CompletableFuture<VoicePlayer> ready = new CompletableFuture<>();
 
-    /** The queue. */
-    private final BlockingQueue<Pair<NoteEnum, byte[]>> queue = new LinkedBlockingQueue<>();
+    /** The samples of the MIDI keys. */
+    private final KeySampleBank keys;
 
-    /** The sounds. */
-    private final EnumMap<NoteEnum, byte[]> sounds = new EnumMap<>(NoteEnum.class);
+    /** The latencies of the notes, from the trigger to the write of the first block. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /** The highest queue depth. */
+    private final AtomicInteger maximumQueueDepth = new AtomicInteger();
+
+    /** The name of the registered management bean, null if not registered. */
+    private volatile ObjectName mbeanName;
+
+    /** The time spent mixing. */
+    private final LongAdder mixTime = new LongAdder();
+
+    /** The session, identified by its ready future, null when the player is closed. */
+    private final AtomicReference<CompletableFuture<VoicePlayer>> session = new AtomicReference<>();
+
+    /** The sink, null to use the default line. */
+    private volatile AudioSink sink;
 
     /** The thread. */
-    private Thread thread;
+    private volatile Thread thread;
+
+    /** The triggers, notes packed using {@link NoteEvent} with the time of the trigger in microseconds as tick. */
+    private final TriggerRing triggers = new TriggerRing(TRIGGERS_CAPACITY);
+
+    /** The underrun count. */
+    private final LongAdder underrunCount = new LongAdder();
+
+    /** The voices. */
+    private volatile int voices = VoiceMixer.DEFAULT_VOICES;
 
-    /** The volume. */
-    private byte volume;
+    /** The volume, in percent. */
+    private volatile byte volume = DEFAULT_VOLUME;
 
-    /** The volume changed. */
-    private final AtomicBoolean volumeChanged = new AtomicBoolean(true);
+    /** The waiting, true when the audio thread is parked. */
+    private volatile boolean waiting;
+
+    /** The time spent writing. */
+    private final LongAdder writeTime = new LongAdder();
 
     /** The stacked. */
     private final AtomicBoolean stacked = new AtomicBoolean(true);
 
     /**
-     * Instantiates a new player.
+     * Instantiates a new player.<br>
+     * The samples are mapped from the packed sample bank generated by the build (or decoded from the WAV resources if it is missing) and copied on first play, notes are then written to the line without any parsing.<br>
+     * The samples are recorded at the octave {@link KeySampleBank#DEFAULT_OCTAVE}, the other octaves are resampled.
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public VoicePlayer() throws IOException {
         super();
-
-        for (final NoteEnum note : NoteEnum.values()) {
-            try (InputStream in = getClass().getResourceAsStream(RESOURCES_PATH + note.getItalianName().toLowerCase() + ".wav")) {
-                if (in == null) {
-                    LOGGER.info("No sound found for note: {}", note);
-                    continue;
-                }
-
-                sounds.put(note, IOUtils.toByteArray(in));
-
-                if (format == null) {
-                    try (AudioInputStream ain = AudioSystem.getAudioInputStream(new ByteArrayInputStream(sounds.get(note)))) {
-                        format = ain.getFormat();
-                    } catch (final UnsupportedAudioFileException e) {
-                        throw new IOException(e);
-                    }
-                }
-            }
-        }
-
-        LOGGER.info("{} sounds loaded", String.valueOf(sounds.size())); // NOSONAR Always written
+        bank = SampleBank.load(RESOURCES_PATH);
+        format = bank.getFormat();
+        keys = new KeySampleBank(bank);
     }
 
     /*
@@ -96,10 +213,15 @@ public class VoicePlayer implements Closeable, Runnable {
      */
     @Override
     public void close() {
-        if (opened.get()) {
-            opened.set(false);
-            queue.add(new ImmutablePair<>(null, null));
+        session.set(null);
+        final Thread current = thread;
+
+        // the audio thread may not have started yet, it exits as soon as it sees the player closed
+        if (current != null) {
+            LockSupport.unpark(current);
         }
+
+        unregisterMBean();
     }
 
     public boolean isStacked() {
@@ -110,29 +232,156 @@ public class VoicePlayer implements Closeable, Runnable {
         this.stacked.set(stacked);
     }
 
+    /**
+     * Gets the sample bank.
+     * @return the bank
+     */
+    public SampleBank getBank() {
+        return bank;
+    }
+
+    /**
+     * Apply the MIDI control change, only the volume and the pan are supported.
+     * @param controller the controller, {@link Constants#VOLUME_CONTROL_CHANGE} or {@link Constants#PAN_CONTROL_CHANGE}
+     * @param value      the value, from 0 to 127
+     */
+    public void controlChange(final int controller, final int value) {
+        final int v = Math.max(0, Math.min(127, value));
+
+        if (controller == Constants.VOLUME_CONTROL_CHANGE) {
+            setVolume((byte) Math.round(v * 100f / 127));
+        } else if (controller == Constants.PAN_CONTROL_CHANGE) {
+            setPan((v - 64) / (v < 64 ? 64f : 63f));
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#getDroppedCount()
+     */
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the interpolation used to play the keys without recorded sample.
+     * @return the interpolation
+     */
+    public Interpolation getInterpolation() {
+        return keys.getInterpolation();
+    }
+
+    /**
+     * Gets the samples of the MIDI keys.
+     * @return the key bank
+     */
+    public KeySampleBank getKeyBank() {
+        return keys;
+    }
+
+    /**
+     * Gets the histogram of the latencies of the notes, from the trigger to the write of the first block containing the note.
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the pan.
+     * @return the pan, from -1 (left) to 1 (right)
+     */
+    public float getPan() {
+        return pan;
+    }
+
+    /**
+     * Gets the future completed by the audio thread when the sink is opened and primed, a new future is used each time the player is opened.
+     * @return the future
+     */
+    public CompletableFuture<VoicePlayer> getReady() {
+        return ready;
+    }
+
+    /**
+     * Gets the sink.
+     * @return the sink or null if the default line is used
+     */
+    public AudioSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Gets the PCM samples of the note at the octave of the recorded samples.
+     * @param note the note
+     * @return the samples interleaved by channel, in the format of the line, shared and not modifiable, or null if the note has no sound
+     */
+    public short[] getSamples(final NoteEnum note) {
+        return bank.getSamples(note);
+    }
+
     /**
      * Gets the sound.
      * @param note the note
-     * @return the sound
+     * @return the sound as a WAV file, or null if the note has no sound
+     * @deprecated the samples are decoded once into the bank, use {@link #getSamples(NoteEnum)} to get them without encoding
      */
+    @Deprecated
     public byte[] getSound(final NoteEnum note) {
-        return sounds.get(note);
+        final short[] samples = bank.getSamples(note);
+
+        if (samples == null) {
+            return null; // NOSONAR Kept for compatibility
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2).order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        buffer.asShortBuffer().put(samples);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(buffer.capacity() + 64);
+
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(buffer.array()), format, samples.length / format.getChannels())) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, out);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteArray();
     }
 
-    /**
-     * Gets the volume.
-     * @return the volume
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#getStats()
      */
+    @Override
+    public VoicePlayerStats getStats() {
+        return new VoicePlayerStats(blockCount.sum(), bufferedFrames, droppedCount.sum(), latency.getCount(), latency.getMaximum(), latency.getMean(), latency.getPercentile(50), latency.getPercentile(99), maximumQueueDepth.get(), mixTime.sum(), triggers.size(), underrunCount.sum(), writeTime.sum());
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#getVoices()
+     */
+    @Override
+    public int getVoices() {
+        return voices;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#getVolume()
+     */
+    @Override
     public byte getVolume() {
         return volume;
     }
 
-    /**
-     * Checks if is open.
-     * @return true, if is open
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#isOpen()
      */
+    @Override
     public boolean isOpen() {
-        return opened.get();
+        return session.get() != null;
     }
 
     /**
@@ -142,14 +391,16 @@ public class VoicePlayer implements Closeable, Runnable {
     public void open() throws IOException {
         LOGGER.info("Opening voice player...");
 
-        if (!opened.get()) {
-            if (thread != null) {
-                thread.interrupt();
-            }
+        final CompletableFuture<VoicePlayer> created = newSession();
 
-            thread = new Thread(this, getClass().getName());
-            thread.setPriority(Thread.MAX_PRIORITY);
-            thread.start();
+        // opened before the thread starts, so a close called in the meantime is seen by the audio thread
+        if (session.compareAndSet(null, created)) {
+            ready = created;
+            // the audio loop always uses a dedicated platform thread, whatever the thread profile
+            final Thread started = new Thread(() -> run(created), getClass().getName());
+            started.setPriority(Thread.MAX_PRIORITY);
+            thread = started;
+            started.start();
         }
     }
 
@@ -169,125 +420,323 @@ public class VoicePlayer implements Closeable, Runnable {
     }
 
     /**
-     * Play.
+     * Play the key.<br>
+     * The samples of the key are resampled by the calling thread if needed, then the key is passed to the audio thread through a preallocated ring, without allocation nor lock, and started with the next block.
+     * @param key the MIDI key
+     */
+    public void play(final int key) {
+        if (key < 0 || key >= MidiKeys.COUNT || bank.isEmpty() || keys.getSamples(key) == null) {
+            LOGGER.info("No sound to play for key: {}", String.valueOf(key));
+            return;
+        }
+
+        if (!triggers.offer(NoteEvent.encode((byte) 0, (byte) key, true, Constants.VELOCITY_FFFF, (byte) 0, System.nanoTime() / MICROSECOND))) {
+            droppedCount.increment();
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Too many pending notes, key dropped: {}", String.valueOf(key));
+            }
+
+            return;
+        }
+
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Play the note at its key, or at its octave if it has no key, released notes are ignored.
+     * @param note the note
+     */
+    public void play(final Note note) {
+        if (!note.isPressed()) {
+            return;
+        }
+
+        if (note.getKey() >= 0) {
+            play(note.getKey());
+        } else if (note.getBaseNote() != null) {
+            play(MidiKeys.getKey(note.getBaseNote(), note.getOctave()));
+        }
+    }
+
+    /**
+     * Play the note at the octave of the recorded samples.
      * @param note the note
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void play(final NoteEnum note) throws IOException {
-        final byte[] data = getSound(note);
-
-        if (data == null) {
+        if (getSamples(note) == null) {
             LOGGER.info("No sound to play for note: {}", note);
             return;
         }
 
         LOGGER.debug("Adding note: {}", note);
-        queue.add(new ImmutablePair<>(note, data));
+        play(MidiKeys.getKey(note, KeySampleBank.DEFAULT_OCTAVE));
+    }
+
+    /**
+     * Register the management bean of the player in the platform server, the bean is unregistered when the player is closed.
+     * @return the name of the bean
+     */
+    public ObjectName registerMBean() {
+        ObjectName result = mbeanName;
+
+        if (result != null) {
+            return result;
+        }
+
+        try {
+            result = new ObjectName("org.infodavid.professore:type=VoicePlayer,name=" + Integer.toHexString(System.identityHashCode(this)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, result);
+        } catch (final JMException e) {
+            throw new IllegalStateException("Cannot register the management bean", e);
+        }
+
+        mbeanName = result;
+
+        return result;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.VoicePlayerMXBean#resetStats()
+     */
+    @Override
+    public void resetStats() {
+        blockCount.reset();
+        maximumQueueDepth.set(0);
+        mixTime.reset();
+        underrunCount.reset();
+        writeTime.reset();
+        latency.reset();
     }
 
     /*
      * (non-javadoc)
      * @see java.lang.Runnable#run()
      */
-    @SuppressWarnings("resource")
     @Override
     public void run() {
-        opened.set(true);
-        final byte[] buffer = new byte[4096 * 4];
-        final DataLine.Info info = new DataLine.Info(SourceDataLine.class, format, buffer.length);
+        final CompletableFuture<VoicePlayer> created = newSession();
 
-        try (SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info)) {
-            line.open(format);
-            line.start();
-            LOGGER.debug("Ready");
+        // the player is opened and played by the calling thread
+        if (session.compareAndSet(null, created)) {
+            ready = created;
+            thread = Thread.currentThread();
+            run(created);
+        }
+    }
 
-            while (isOpen()) { // NOSONAR break and continue
-                Pair<NoteEnum, byte[]> entry = queue.poll(1000, TimeUnit.MILLISECONDS);
+    /**
+     * Sets the interpolation used to play the keys without recorded sample.
+     * @param interpolation the interpolation
+     */
+    public void setInterpolation(final Interpolation interpolation) {
+        keys.setInterpolation(interpolation);
+    }
 
-                if (!stacked.get()) {
-                    while (queue.size() > 1) {
-                        entry = queue.poll(1000, TimeUnit.MILLISECONDS);
-                    }
-                }
+    /**
+     * Sets the pan, applied to the samples by the mixer with a ramp over one block.
+     * @param pan the pan, from -1 (left) to 1 (right)
+     */
+    public void setPan(final float pan) {
+        this.pan = Math.max(-1f, Math.min(1f, pan));
+    }
 
-                if (entry == null) {
-                    continue;
-                }
+    /**
+     * Sets the sink used when the player is opened, the sink is closed when the player is closed.
+     * @param sink the sink, null to use a JavaSound line
+     */
+    public void setSink(final AudioSink sink) {
+        this.sink = sink;
+    }
 
-                if (entry.getKey() == null) {
-                    break;
-                }
+    /**
+     * Sets the number of voices of the mixer, used when the player is opened.
+     * @param voices the voices
+     */
+    public void setVoices(final int voices) {
+        if (voices <= 0) {
+            this.voices = VoiceMixer.DEFAULT_VOICES;
+        } else {
+            this.voices = voices;
+        }
+    }
 
-                if (volumeChanged.get()) {
-                    volumeChanged.set(false);
-                    applyVolume(line, volume);
-                }
+    /**
+     * Unregister the management bean of the player, if registered.
+     */
+    public void unregisterMBean() {
+        final ObjectName name = mbeanName;
 
-                LOGGER.debug("Playing: {}", entry.getKey());
-                int read = 0;
+        if (name == null) {
+            return;
+        }
 
-                try (final ByteArrayInputStream bais = new ByteArrayInputStream(entry.getValue()); AudioInputStream ais = AudioSystem.getAudioInputStream(bais)) {
-                    while ((stacked.get() || queue.isEmpty()) && (read = ais.read(buffer)) > 0) {
-                        line.write(buffer, 0, read);
-                    }
-                }
-            }
-        } catch (IOException | LineUnavailableException | UnsupportedAudioFileException | NullPointerException e) {
-            LOGGER.warn("Cannot play sound", e);
-        } catch (@SuppressWarnings("unused") final InterruptedException e) {
-            LOGGER.warn("Thread interrupted");
+        mbeanName = null;
 
-            Thread.currentThread().interrupt();
-        } finally {
-            opened.set(false);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (final JMException e) {
+            LOGGER.warn("Cannot unregister the management bean: {}", name, e);
         }
-
-        LOGGER.info("Voice player closed");
     }
 
     /**
-     * Sets the volume.
-     * @param value the new volume
+     * Sets the volume, applied to the samples by the mixer with a ramp over one block, so the change is immediate and click free.
+     * @param value the new volume, in percent
      */
     public void setVolume(final byte value) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Setting volume to: {}", String.valueOf(value));
         }
 
-        volume = value;
-        volumeChanged.set(true);
+        volume = (byte) Math.max(0, value);
     }
 
     /**
-     * Apply volume.
-     * @param line  the line
-     * @param value the volume
+     * New session, the future of the first session may already be awaited, the following sessions use a new future.
+     * @return the ready future identifying the session
      */
-    @SuppressWarnings("static-method")
-    private void applyVolume(final SourceDataLine line, final byte value) {
-        if (line.isControlSupported(FloatControl.Type.VOLUME)) {
-            final FloatControl control = (FloatControl) line.getControl(FloatControl.Type.VOLUME);
-            final float v = (float) (value / 100.0);
+    private CompletableFuture<VoicePlayer> newSession() {
+        final CompletableFuture<VoicePlayer> previous = ready;
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Using volume value: {}", String.valueOf(v));
-            }
+        if (thread == null && !previous.isDone()) {
+            return previous;
+        }
 
-            control.setValue(v);
-        } else {
-            LOGGER.debug("Volume control is not available");
-            final FloatControl control = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-            final float v = (float) (Math.log(value / 100.0) / Math.log(10.0) * 20.0);
+        return new CompletableFuture<>();
+    }
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Using gain value: {}", String.valueOf(v));
+    /**
+     * Run the audio loop of the session, the loop stops when the player is closed or opened again by another session.
+     * @param current the session, identified by its ready future
+     */
+    @SuppressWarnings("resource")
+    private void run(final CompletableFuture<VoicePlayer> current) {
+        final VoiceMixer mixer = new VoiceMixer(voices, format.getChannels(), VoiceMixer.DEFAULT_BLOCK_FRAMES);
+        final byte[] block = new byte[mixer.getBlockSize()];
+        final AudioSink configured = sink;
+        // ticks of the notes started in the current block, preallocated as the ring cannot hold more notes
+        final long[] started = new long[triggers.getCapacity()];
+        boolean playing = false;
+
+        try (AudioSink output = configured == null ? new LineAudioSink() : configured) {
+            output.open(format, block.length * LINE_BLOCKS);
+            // one block of silence starts the line, so the first note does not pay for the start of the device
+            output.write(block, 0, mixer.mix(block));
+            LOGGER.debug("Ready");
+
+            // a player closed while starting is not ready, the future is completed exceptionally when leaving
+            if (session.get() == current) {
+                current.complete(this);
             }
 
-            control.setValue(v);
+            while (session.get() == current && !Thread.currentThread().isInterrupted()) { // NOSONAR continue
+                // waiting only when nothing is playing, otherwise one block is written per cycle
+                if (mixer.isIdle() && triggers.isEmpty()) {
+                    playing = false;
+                    waiting = true;
+
+                    if (triggers.isEmpty() && session.get() == current) {
+                        LockSupport.parkNanos(this, IDLE_WAIT);
+                    }
+
+                    waiting = false;
+
+                    continue;
+                }
+
+                final int depth = triggers.size();
+
+                if (depth > maximumQueueDepth.get()) {
+                    maximumQueueDepth.set(depth);
+                }
+
+                int count = 0;
+                long trigger;
+
+                while ((trigger = triggers.poll()) != TriggerRing.EMPTY) {
+                    if (!stacked.get()) {
+                        mixer.stopAll();
+                    }
+
+                    // resolved by the producer, the audio thread never resamples
+                    final short[] samples = keys.getSamplesIfPresent(NoteEvent.getKey(trigger));
+
+                    if (samples == null) {
+                        droppedCount.increment();
+
+                        continue;
+                    }
+
+                    mixer.start(samples);
+
+                    if (count < started.length) {
+                        started[count++] = NoteEvent.getTick(trigger);
+                    }
+                }
+
+                // parameters published by the control threads, ramped by the mixer over the block
+                mixer.setGain(volume / 100f);
+                mixer.setPan(pan);
+                final long mixStart = System.nanoTime();
+                final int length = mixer.mix(block);
+                final long writeStart = System.nanoTime();
+
+                // the sink has played everything while the notes were sounding, the device starved
+                if (playing && output.getBufferedFrames() == 0) {
+                    underrunCount.increment();
+                }
+
+                output.write(block, 0, length);
+                final long end = System.nanoTime();
+                mixTime.add(writeStart - mixStart);
+                writeTime.add(end - writeStart);
+                blockCount.increment();
+                bufferedFrames = output.getBufferedFrames();
+                playing = true;
+
+                for (int i = 0; i < count; i++) {
+                    // ticks are truncated to 36 bits of microseconds, the difference is computed modulo this width
+                    latency.record((end / MICROSECOND - started[i] & NoteEvent.MAX_TICK) * MICROSECOND);
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot play sound", e);
+            current.completeExceptionally(e);
+        } finally {
+            // a new session opened in the meantime is kept
+            session.compareAndSet(current, null);
+            current.completeExceptionally(new IOException("Voice player closed before being ready"));
         }
 
-        if (line.isControlSupported(BooleanControl.Type.MUTE)) {
-            ((BooleanControl) line.getControl(BooleanControl.Type.MUTE)).setValue(value <= 0);
+        LOGGER.info("Voice player closed");
+    }
+
+    /**
+     * Mix blocks of all the recorded samples into a discarded buffer, so the mixing path is compiled before the first note.
+     */
+    private void warmUp() {
+        final VoiceMixer mixer = new VoiceMixer(voices, format.getChannels(), VoiceMixer.DEFAULT_BLOCK_FRAMES);
+        final byte[] block = new byte[mixer.getBlockSize()];
+
+        for (int i = 0; i < WARM_UP_BLOCKS; i++) {
+            if (mixer.isIdle()) {
+                for (final NoteEnum note : NoteEnum.values()) {
+                    final short[] data = bank.getSamples(note);
+
+                    if (data != null) {
+                        mixer.start(data);
+                    }
+                }
+            }
+
+            // both the unity and the scaled paths
+            mixer.setGain(i % 2 == 0 ? 1f : 0.5f);
+            mixer.mix(block);
         }
     }
 }
@@ -0,0 +1,43 @@
+package org.infodavid.professore.core;
+
+/**
+ * The Interface VoicePlayerMXBean.<br>
+ * Management interface of the {@link VoicePlayer}, registered using {@link VoicePlayer#registerMBean()}.
+ */
+public interface VoicePlayerMXBean {
+
+    /**
+     * Gets the number of notes dropped because too many notes were pending.
+     * @return the dropped count
+     */
+    long getDroppedCount();
+
+    /**
+     * Gets the snapshot of the metrics.
+     * @return the stats
+     */
+    VoicePlayerStats getStats();
+
+    /**
+     * Gets the number of voices of the mixer.
+     * @return the voices
+     */
+    int getVoices();
+
+    /**
+     * Gets the volume.
+     * @return the volume, in percent
+     */
+    byte getVolume();
+
+    /**
+     * Checks if is open.
+     * @return true, if is open
+     */
+    boolean isOpen();
+
+    /**
+     * Reset the metrics.
+     */
+    void resetStats();
+}
@@ -0,0 +1,197 @@
+package org.infodavid.professore.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The Class VoicePlayerStats.<br>
+ * Immutable snapshot of the metrics of a {@link VoicePlayer}, durations are in nanoseconds.<br>
+ * The latency is measured from the call to {@link VoicePlayer#play(int)} to the return of the write of the first block containing the note to the sink.
+ */
+public final class VoicePlayerStats {
+
+    /** The number of blocks written. */
+    private final long blockCount;
+
+    /** The number of frames buffered by the sink after the last write, -1 if unknown. */
+    private final long bufferedFrames;
+
+    /** The number of dropped notes. */
+    private final long droppedCount;
+
+    /** The number of measured latencies. */
+    private final long latencyCount;
+
+    /** The highest latency. */
+    private final long latencyMaximum;
+
+    /** The mean latency. */
+    private final long latencyMean;
+
+    /** The median latency. */
+    private final long latencyMedian;
+
+    /** The 99th percentile of the latency. */
+    private final long latencyPercentile99;
+
+    /** The highest number of pending notes seen by the audio thread. */
+    private final int maximumQueueDepth;
+
+    /** The time spent mixing the blocks. */
+    private final long mixTime;
+
+    /** The number of pending notes. */
+    private final int queueDepth;
+
+    /** The number of underruns, blocks written while the sink had nothing left to play. */
+    private final long underrunCount;
+
+    /** The time spent writing the blocks to the sink, including the time blocked by the sink. */
+    private final long writeTime;
+
+    /**
+     * Instantiates a new snapshot.
+     * @param blockCount          the block count
+     * @param bufferedFrames      the buffered frames
+     * @param droppedCount        the dropped count
+     * @param latencyCount        the latency count
+     * @param latencyMaximum      the latency maximum
+     * @param latencyMean         the latency mean
+     * @param latencyMedian       the latency median
+     * @param latencyPercentile99 the latency percentile 99
+     * @param maximumQueueDepth   the maximum queue depth
+     * @param mixTime             the mix time
+     * @param queueDepth          the queue depth
+     * @param underrunCount       the underrun count
+     * @param writeTime           the write time
+     */
+    @SuppressWarnings("squid:S00107")
+    public VoicePlayerStats(final long blockCount, final long bufferedFrames, final long droppedCount, final long latencyCount, final long latencyMaximum, final long latencyMean, final long latencyMedian, final long latencyPercentile99, final int maximumQueueDepth, final long mixTime, final int queueDepth, final long underrunCount, final long writeTime) { // NOSONAR Snapshot
+        super();
+        this.blockCount = blockCount;
+        this.bufferedFrames = bufferedFrames;
+        this.droppedCount = droppedCount;
+        this.latencyCount = latencyCount;
+        this.latencyMaximum = latencyMaximum;
+        this.latencyMean = latencyMean;
+        this.latencyMedian = latencyMedian;
+        this.latencyPercentile99 = latencyPercentile99;
+        this.maximumQueueDepth = maximumQueueDepth;
+        this.mixTime = mixTime;
+        this.queueDepth = queueDepth;
+        this.underrunCount = underrunCount;
+        this.writeTime = writeTime;
+    }
+
+    /**
+     * Gets the number of blocks written.
+     * @return the block count
+     */
+    public long getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Gets the number of frames buffered by the sink after the last write.
+     * @return the buffered frames, -1 if unknown
+     */
+    public long getBufferedFrames() {
+        return bufferedFrames;
+    }
+
+    /**
+     * Gets the number of dropped notes.
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets the number of measured latencies.
+     * @return the latency count
+     */
+    public long getLatencyCount() {
+        return latencyCount;
+    }
+
+    /**
+     * Gets the highest latency.
+     * @return the latency maximum
+     */
+    public long getLatencyMaximum() {
+        return latencyMaximum;
+    }
+
+    /**
+     * Gets the mean latency.
+     * @return the latency mean
+     */
+    public long getLatencyMean() {
+        return latencyMean;
+    }
+
+    /**
+     * Gets the median latency.
+     * @return the latency median
+     */
+    public long getLatencyMedian() {
+        return latencyMedian;
+    }
+
+    /**
+     * Gets the 99th percentile of the latency.
+     * @return the latency percentile 99
+     */
+    public long getLatencyPercentile99() {
+        return latencyPercentile99;
+    }
+
+    /**
+     * Gets the highest number of pending notes seen by the audio thread.
+     * @return the maximum queue depth
+     */
+    public int getMaximumQueueDepth() {
+        return maximumQueueDepth;
+    }
+
+    /**
+     * Gets the time spent mixing the blocks.
+     * @return the mix time
+     */
+    public long getMixTime() {
+        return mixTime;
+    }
+
+    /**
+     * Gets the number of pending notes.
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the number of underruns.
+     * @return the underrun count
+     */
+    public long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    /**
+     * Gets the time spent writing the blocks to the sink.
+     * @return the write time
+     */
+    public long getWriteTime() {
+        return writeTime;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,45 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The Interface AudioSink.<br>
+ * Destination of the PCM frames produced by the players, a sink is opened once, written by a single thread and then closed.
+ */
+public interface AudioSink extends Closeable {
+
+    /**
+     * Gets the number of frames written and not yet played, used to detect the underruns.
+     * @return the number of frames or -1 if the sink cannot tell
+     */
+    default long getBufferedFrames() {
+        return -1;
+    }
+
+    /**
+     * Gets the format.
+     * @return the format or null if not opened
+     */
+    AudioFormat getFormat();
+
+    /**
+     * Open the sink.
+     * @param format     the format of the frames
+     * @param bufferSize the requested size of the buffer, in bytes
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void open(AudioFormat format, int bufferSize) throws IOException;
+
+    /**
+     * Write the frames.
+     * @param data   the data
+     * @param offset the offset
+     * @param length the length, a multiple of the frame size
+     * @return the number of bytes written, a non blocking sink may write less bytes than requested
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    int write(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,17 @@
+package org.infodavid.professore.core.audio;
+
+/**
+ * The Enum Interpolation.<br>
+ * Interpolation used to resample the PCM samples.
+ */
+public enum Interpolation {
+
+    /** The cubic interpolation (Catmull-Rom), using 4 source frames, best quality. */
+    CUBIC,
+
+    /** The linear interpolation, using 2 source frames. */
+    LINEAR,
+
+    /** The nearest frame, no interpolation, fastest. */
+    NEAREST
+}
@@ -0,0 +1,169 @@
+package org.infodavid.professore.core.audio;
+
+import java.util.function.Function;
+
+import org.infodavid.professore.core.CacheStatistics;
+import org.infodavid.professore.core.MidiKeys;
+import org.infodavid.professore.core.NoteEnum;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * The Class KeySampleBank.<br>
+ * Samples of the 128 MIDI keys, derived from the samples of a {@link SampleBank} recorded at a given octave.<br>
+ * A key without its own sample is resampled from the nearest recorded key, resampled samples are kept in a cache bounded by the number of samples.
+ */
+public final class KeySampleBank {
+
+    /** The Constant DEFAULT_MAXIMUM_WEIGHT, in number of samples. */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 8_000_000;
+
+    /** The Constant DEFAULT_OCTAVE, octave of the recorded samples. */
+    public static final int DEFAULT_OCTAVE = 4;
+
+    /** The bank. */
+    private final SampleBank bank;
+
+    /** The cache of the resampled samples. */
+    private final Cache<Integer, short[]> cache;
+
+    /** The interpolation. */
+    private volatile Interpolation interpolation = Interpolation.LINEAR;
+
+    /** The loader, kept to avoid the allocation of a method reference on each lookup. */
+    private final Function<Integer, short[]> loader = this::resample;
+
+    /** The notes of the recorded samples indexed by key, the samples are requested from the bank on first use so a mapped bank is read lazily. */
+    private final NoteEnum[] sources = new NoteEnum[MidiKeys.COUNT];
+
+    /**
+     * Instantiates a new bank using the default octave and maximum weight.
+     * @param bank the bank of the recorded samples
+     */
+    public KeySampleBank(final SampleBank bank) {
+        this(bank, DEFAULT_OCTAVE, DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * Instantiates a new bank.
+     * @param bank          the bank of the recorded samples
+     * @param octave        the octave of the recorded samples
+     * @param maximumWeight the maximum number of resampled samples kept in the cache
+     */
+    public KeySampleBank(final SampleBank bank, final int octave, final long maximumWeight) {
+        super();
+        this.bank = bank;
+
+        for (final NoteEnum note : NoteEnum.values()) {
+            final int key = MidiKeys.getKey(note, octave);
+
+            if (key >= 0 && bank.getFrameLength(note) > 0) {
+                sources[key] = note;
+            }
+        }
+
+        cache = Caffeine.newBuilder().maximumWeight(maximumWeight).weigher((final Integer k, final short[] v) -> Math.max(1, v.length)).recordStats().build();
+    }
+
+    /**
+     * Gets the bank of the recorded samples.
+     * @return the bank
+     */
+    public SampleBank getBank() {
+        return bank;
+    }
+
+    /**
+     * Gets the interpolation.
+     * @return the interpolation
+     */
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * Gets the samples of the key, resampled if the key has no recorded sample.
+     * @param key the MIDI key
+     * @return the samples interleaved by channel, shared and not modifiable, or null if the bank is empty
+     */
+    public short[] getSamples(final int key) {
+        final int k = key & 0x7F;
+
+        if (sources[k] != null) {
+            return bank.getSamples(sources[k]);
+        }
+
+        // boxing of a MIDI key uses the cache of the integers
+        return cache.get(Integer.valueOf(k), loader);
+    }
+
+    /**
+     * Gets the samples of the key if they are available without resampling, used by the audio thread.
+     * @param key the MIDI key
+     * @return the samples interleaved by channel, shared and not modifiable, or null if the key has not been resampled yet or has been evicted
+     * @see #getSamples(int)
+     */
+    public short[] getSamplesIfPresent(final int key) {
+        final int k = key & 0x7F;
+
+        if (sources[k] != null) {
+            return bank.getSamples(sources[k]);
+        }
+
+        return cache.getIfPresent(Integer.valueOf(k));
+    }
+
+    /**
+     * Gets the statistics of the cache of the resampled samples.
+     * @return the statistics
+     */
+    public CacheStatistics getStats() {
+        final CacheStats stats = cache.stats();
+
+        return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(), stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount(), stats.evictionWeight());
+    }
+
+    /**
+     * Resample the keys in advance, so the first play of these keys does not pay for the resampling.
+     * @param fromKey the first MIDI key
+     * @param toKey   the last MIDI key, inclusive
+     */
+    public void preload(final int fromKey, final int toKey) {
+        for (int key = Math.max(0, fromKey); key <= Math.min(MidiKeys.COUNT - 1, toKey); key++) {
+            getSamples(key);
+        }
+    }
+
+    /**
+     * Sets the interpolation, the resampled samples are discarded.
+     * @param interpolation the interpolation
+     */
+    public void setInterpolation(final Interpolation interpolation) {
+        this.interpolation = interpolation == null ? Interpolation.LINEAR : interpolation;
+        cache.invalidateAll();
+    }
+
+    /**
+     * Resample the nearest recorded key.
+     * @param key the MIDI key
+     * @return the samples or null if the bank is empty
+     */
+    private short[] resample(final Integer key) {
+        final int k = key.intValue();
+        int source = -1;
+
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] != null && (source < 0 || Math.abs(i - k) < Math.abs(source - k))) {
+                source = i;
+            }
+        }
+
+        if (source < 0) {
+            return null;
+        }
+
+        return Resampler.resample(bank.getSamples(sources[source]), bank.getChannels(), Resampler.getRatio(k - source), interpolation);
+    }
+}
@@ -0,0 +1,142 @@
+package org.infodavid.professore.core.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Class LatencyHistogram.<br>
+ * Preallocated histogram of durations in nanoseconds, using logarithmic buckets with 4 sub-buckets per power of two (relative error below 25%).<br>
+ * Recording does not allocate nor lock, the histogram can be read by any thread while it is recorded.
+ */
+public final class LatencyHistogram {
+
+    /** The Constant BUCKETS. */
+    private static final int BUCKETS = 64 * 4;
+
+    /** The Constant SUB_BITS. */
+    private static final int SUB_BITS = 2;
+
+    /**
+     * Gets the index of the bucket of the value.
+     * @param value the value, non negative
+     * @return the index
+     */
+    private static int getIndex(final long value) {
+        if (value < 1 << SUB_BITS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        return (exponent - SUB_BITS + 1 << SUB_BITS) + (int) (value >>> exponent - SUB_BITS & (1 << SUB_BITS) - 1);
+    }
+
+    /**
+     * Gets the highest value of the bucket.
+     * @param index the index
+     * @return the value
+     */
+    private static long getUpperBound(final int index) {
+        if (index < 1 << SUB_BITS) {
+            return index;
+        }
+
+        final int exponent = (index >> SUB_BITS) + SUB_BITS - 1;
+        final long lower = 1L << exponent | (long) (index & (1 << SUB_BITS) - 1) << exponent - SUB_BITS;
+
+        return lower + (1L << exponent - SUB_BITS) - 1;
+    }
+
+    /** The counts of the buckets. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The maximum. */
+    private final AtomicLong maximum = new AtomicLong();
+
+    /** The sum. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The total count. */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * Gets the number of recorded values.
+     * @return the count
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * Gets the highest recorded value.
+     * @return the maximum, in nanoseconds
+     */
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     * @return the mean, in nanoseconds, or 0 if nothing is recorded
+     */
+    public long getMean() {
+        final long count = total.get();
+
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    /**
+     * Gets the percentile, as the highest value of the bucket containing it.
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, in nanoseconds, or 0 if nothing is recorded
+     */
+    public long getPercentile(final double percentile) {
+        final long count = total.get();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(count * Math.max(0d, Math.min(100d, percentile)) / 100d));
+        long cumulated = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulated += counts.get(i);
+
+            if (cumulated >= rank) {
+                return Math.min(getUpperBound(i), maximum.get());
+            }
+        }
+
+        return maximum.get();
+    }
+
+    /**
+     * Record the duration.
+     * @param nanos the duration, in nanoseconds, negative durations are recorded as 0
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(getIndex(value));
+        sum.addAndGet(value);
+        total.incrementAndGet();
+        long current;
+
+        while ((current = maximum.get()) < value && !maximum.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Reset the histogram, values recorded during the reset may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        total.set(0);
+        sum.set(0);
+        maximum.set(0);
+    }
+}
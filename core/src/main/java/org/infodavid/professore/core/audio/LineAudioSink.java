@@ -0,0 +1,99 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * The Class LineAudioSink.<br>
+ * Sink writing the frames to a JavaSound source data line, writes block until the line accepts the data.
+ */
+public class LineAudioSink implements AudioSink {
+
+    /** The line. */
+    private SourceDataLine line;
+
+    /** The number of bytes written to the line since it was opened. */
+    private long writtenBytes;
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getBufferedFrames()
+     */
+    @Override
+    public long getBufferedFrames() {
+        final SourceDataLine current = line;
+
+        if (current == null) {
+            return -1;
+        }
+
+        // frames written minus frames rendered by the device, the frame position does not depend on the buffer implementation
+        return Math.max(0, writtenBytes / current.getFormat().getFrameSize() - current.getLongFramePosition());
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getFormat()
+     */
+    @Override
+    public AudioFormat getFormat() {
+        return line == null ? null : line.getFormat();
+    }
+
+    /**
+     * Gets the line.
+     * @return the line or null if not opened
+     */
+    public SourceDataLine getLine() {
+        return line;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#open(javax.sound.sampled.AudioFormat, int)
+     */
+    @Override
+    public void open(final AudioFormat format, final int bufferSize) throws IOException {
+        final DataLine.Info info = new DataLine.Info(SourceDataLine.class, format, bufferSize);
+
+        try {
+            line = (SourceDataLine) AudioSystem.getLine(info);
+            line.open(format, bufferSize);
+            line.start();
+            writtenBytes = 0;
+        } catch (final LineUnavailableException | IllegalArgumentException e) {
+            close();
+
+            throw new IOException("Line is not available for format: " + format, e);
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#write(byte[], int, int)
+     */
+    @Override
+    public int write(final byte[] data, final int offset, final int length) {
+        final int result = line.write(data, offset, length);
+        writtenBytes += result;
+
+        return result;
+    }
+}
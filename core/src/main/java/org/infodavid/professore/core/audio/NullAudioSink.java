@@ -0,0 +1,94 @@
+package org.infodavid.professore.core.audio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The Class NullAudioSink.<br>
+ * Sink discarding the frames and counting the writes, used to run and measure the players without any audio device.
+ */
+public class NullAudioSink implements AudioSink {
+
+    /** The byte count. */
+    private final LongAdder byteCount = new LongAdder();
+
+    /** The format. */
+    private volatile AudioFormat format;
+
+    /** The write count. */
+    private final LongAdder writeCount = new LongAdder();
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        format = null;
+    }
+
+    /**
+     * Gets the number of written bytes.
+     * @return the byte count
+     */
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getFormat()
+     */
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the number of written frames.
+     * @return the frame count or 0 if not opened
+     */
+    public long getFrameCount() {
+        final AudioFormat current = format;
+
+        return current == null ? 0 : byteCount.sum() / current.getFrameSize();
+    }
+
+    /**
+     * Gets the number of writes.
+     * @return the write count
+     */
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#open(javax.sound.sampled.AudioFormat, int)
+     */
+    @Override
+    public void open(final AudioFormat format, final int bufferSize) {
+        this.format = format;
+    }
+
+    /**
+     * Reset the counters.
+     */
+    public void reset() {
+        byteCount.reset();
+        writeCount.reset();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#write(byte[], int, int)
+     */
+    @Override
+    public int write(final byte[] data, final int offset, final int length) {
+        byteCount.add(length);
+        writeCount.increment();
+
+        return length;
+    }
+}
@@ -0,0 +1,160 @@
+package org.infodavid.professore.core.audio;
+
+/**
+ * The Class Resampler.<br>
+ * Resample PCM samples interleaved by channel, used to change the pitch of a sample: a ratio of 2 plays the sample one octave higher and twice faster.
+ */
+public final class Resampler {
+
+    /**
+     * Gets the ratio used to shift the pitch by the given number of semitones.
+     * @param semitones the semitones
+     * @return the ratio
+     */
+    public static double getRatio(final int semitones) {
+        return Math.pow(2, semitones / 12d);
+    }
+
+    /**
+     * Resample the samples.<br>
+     * When the pitch is raised, the source is first low-pass filtered using a moving average over the frames skipped by each step, so the frequencies above the new Nyquist frequency do not fold back as aliasing.
+     * @param source        the source samples interleaved by channel
+     * @param channels      the number of channels
+     * @param ratio         the ratio between the source and the target rates, greater than 1 to raise the pitch
+     * @param interpolation the interpolation
+     * @return the resampled samples
+     */
+    public static short[] resample(final short[] source, final int channels, final double ratio, final Interpolation interpolation) {
+        if (ratio <= 0) {
+            throw new IllegalArgumentException("Ratio must be positive: " + ratio);
+        }
+
+        final int frames = source.length / channels;
+
+        if (frames == 0) {
+            return new short[0];
+        }
+
+        final int targetFrames = (int) ((frames - 1) / ratio) + 1;
+        final short[] result = new short[targetFrames * channels];
+        final short[] input = ratio > 1 && interpolation != Interpolation.NEAREST ? lowPass(source, channels, frames, (int) Math.ceil(ratio)) : source;
+
+        for (int c = 0; c < channels; c++) {
+            switch (interpolation) {
+                case NEAREST:
+                    nearest(input, channels, c, frames, ratio, result, targetFrames);
+                    break;
+                case LINEAR:
+                    linear(input, channels, c, frames, ratio, result, targetFrames);
+                    break;
+                default:
+                    cubic(input, channels, c, frames, ratio, result, targetFrames);
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resample a channel using the cubic interpolation.
+     * @param source       the source
+     * @param channels     the channels
+     * @param channel      the channel
+     * @param frames       the number of source frames
+     * @param ratio        the ratio
+     * @param target       the target
+     * @param targetFrames the number of target frames
+     */
+    private static void cubic(final short[] source, final int channels, final int channel, final int frames, final double ratio, final short[] target, final int targetFrames) {
+        final int last = frames - 1;
+
+        for (int i = 0; i < targetFrames; i++) {
+            final double position = i * ratio;
+            final int index = (int) position;
+            final double t = position - index;
+            final double y0 = source[Math.max(0, index - 1) * channels + channel];
+            final double y1 = source[index * channels + channel];
+            final double y2 = source[Math.min(last, index + 1) * channels + channel];
+            final double y3 = source[Math.min(last, index + 2) * channels + channel];
+            final double value = y1 + 0.5 * t * (y2 - y0 + t * (2 * y0 - 5 * y1 + 4 * y2 - y3 + t * (3 * (y1 - y2) + y3 - y0)));
+            target[i * channels + channel] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+    }
+
+    /**
+     * Resample a channel using the linear interpolation.
+     * @param source       the source
+     * @param channels     the channels
+     * @param channel      the channel
+     * @param frames       the number of source frames
+     * @param ratio        the ratio
+     * @param target       the target
+     * @param targetFrames the number of target frames
+     */
+    private static void linear(final short[] source, final int channels, final int channel, final int frames, final double ratio, final short[] target, final int targetFrames) {
+        final int last = frames - 1;
+
+        for (int i = 0; i < targetFrames; i++) {
+            final double position = i * ratio;
+            final int index = (int) position;
+            final double t = position - index;
+            final int y0 = source[index * channels + channel];
+            final int y1 = source[Math.min(last, index + 1) * channels + channel];
+            target[i * channels + channel] = (short) Math.round(y0 + (y1 - y0) * t);
+        }
+    }
+
+    /**
+     * Low-pass filter the channels using a centered moving average.
+     * @param source   the source
+     * @param channels the channels
+     * @param frames   the number of source frames
+     * @param width    the width of the window, in frames
+     * @return the filtered samples
+     */
+    private static short[] lowPass(final short[] source, final int channels, final int frames, final int width) {
+        final short[] result = new short[source.length];
+        final long[] sums = new long[frames + 1];
+        final int half = width / 2;
+
+        for (int c = 0; c < channels; c++) {
+            for (int i = 0; i < frames; i++) {
+                sums[i + 1] = sums[i] + source[i * channels + c];
+            }
+
+            for (int i = 0; i < frames; i++) {
+                final int from = Math.max(0, i - half);
+                final int to = Math.min(frames, i - half + width);
+                result[i * channels + c] = (short) ((sums[to] - sums[from]) / (to - from));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resample a channel using the nearest frame.
+     * @param source       the source
+     * @param channels     the channels
+     * @param channel      the channel
+     * @param frames       the number of source frames
+     * @param ratio        the ratio
+     * @param target       the target
+     * @param targetFrames the number of target frames
+     */
+    private static void nearest(final short[] source, final int channels, final int channel, final int frames, final double ratio, final short[] target, final int targetFrames) {
+        final int last = frames - 1;
+
+        for (int i = 0; i < targetFrames; i++) {
+            target[i * channels + channel] = source[Math.min(last, (int) Math.round(i * ratio)) * channels + channel];
+        }
+    }
+
+    /**
+     * Instantiates a new resampler.
+     */
+    private Resampler() {
+        super();
+    }
+}
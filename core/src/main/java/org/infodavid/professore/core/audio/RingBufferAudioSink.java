@@ -0,0 +1,162 @@
+package org.infodavid.professore.core.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The Class RingBufferAudioSink.<br>
+ * Sink storing the frames in a ring buffer of fixed capacity, read by another thread using {@link #read(byte[], int, int)}.<br>
+ * The sink is lock free for one writer and one reader, writes never block: the frames not fitting in the buffer are dropped and counted.
+ */
+public class RingBufferAudioSink implements AudioSink {
+
+    /**
+     * Copy the bytes between the ring and the array, in two parts when the end of the ring is reached.
+     * @param ring       the ring
+     * @param ringOffset the offset in the ring
+     * @param data       the array
+     * @param offset     the offset in the array
+     * @param length     the length
+     * @param toRing     true to copy from the array to the ring
+     */
+    private static void copy(final byte[] ring, final int ringOffset, final byte[] data, final int offset, final int length, final boolean toRing) {
+        final int first = Math.min(length, ring.length - ringOffset);
+
+        if (toRing) {
+            System.arraycopy(data, offset, ring, ringOffset, first);
+            System.arraycopy(data, offset + first, ring, 0, length - first);
+        } else {
+            System.arraycopy(ring, ringOffset, data, offset, first);
+            System.arraycopy(ring, 0, data, offset + first, length - first);
+        }
+    }
+
+    /** The buffer. */
+    private final byte[] buffer;
+
+    /** The dropped bytes. */
+    private final AtomicLong droppedBytes = new AtomicLong();
+
+    /** The format. */
+    private volatile AudioFormat format;
+
+    /** The read position, only updated by the reader. */
+    private final AtomicLong readPosition = new AtomicLong();
+
+    /** The write position, only updated by the writer. */
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /**
+     * Instantiates a new sink.
+     * @param capacity the capacity in bytes
+     */
+    public RingBufferAudioSink(final int capacity) {
+        super();
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Gets the number of bytes available for reading.
+     * @return the number of bytes
+     */
+    public int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        format = null;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getBufferedFrames()
+     */
+    @Override
+    public long getBufferedFrames() {
+        final AudioFormat current = format;
+
+        return current == null ? -1 : available() / Math.max(1, current.getFrameSize());
+    }
+
+    /**
+     * Gets the capacity.
+     * @return the capacity in bytes
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Gets the number of bytes dropped because the buffer was full.
+     * @return the dropped bytes
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getFormat()
+     */
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#open(javax.sound.sampled.AudioFormat, int)
+     */
+    @Override
+    public void open(final AudioFormat format, final int bufferSize) {
+        this.format = format;
+    }
+
+    /**
+     * Read the available bytes.
+     * @param data   the data
+     * @param offset the offset
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read
+     */
+    public int read(final byte[] data, final int offset, final int length) {
+        final long position = readPosition.get();
+        final int count = (int) Math.min(length, writePosition.get() - position);
+        copy(buffer, (int) (position % buffer.length), data, offset, count, false);
+        readPosition.lazySet(position + count);
+
+        return count;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#write(byte[], int, int)
+     */
+    @Override
+    public int write(final byte[] data, final int offset, final int length) {
+        final long position = writePosition.get();
+        final AudioFormat current = format;
+        final int frameSize = current == null ? 1 : Math.max(1, current.getFrameSize());
+        int count = (int) Math.min(length, buffer.length - (position - readPosition.get()));
+        count -= count % frameSize;
+        copy(buffer, (int) (position % buffer.length), data, offset, count, true);
+        writePosition.lazySet(position + count);
+
+        if (count < length) {
+            droppedBytes.addAndGet((long) length - count);
+        }
+
+        return count;
+    }
+}
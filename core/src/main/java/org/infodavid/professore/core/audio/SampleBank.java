@@ -0,0 +1,280 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.apache.commons.io.IOUtils;
+import org.infodavid.professore.core.NoteEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class SampleBank.<br>
+ * Samples of the notes decoded once into 16 bits PCM samples, interleaved by channel, all the samples use the same format so they can be mixed directly.<br>
+ * A bank loaded from a packed file (see {@link SampleBankFile}) is memory mapped and shared by the process, the samples of a note are copied from the mapping when first requested because the mixer works on arrays, so only the notes played are read and copied once.
+ */
+public final class SampleBank {
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleBank.class);
+
+    /** The Constant PACKED_NAME, name of the packed file in the resources. */
+    public static final String PACKED_NAME = "bank.pcm";
+
+    /** The Constant SAMPLE_SIZE_IN_BITS. */
+    static final int SAMPLE_SIZE_IN_BITS = 16;
+
+    /**
+     * Decode the samples of the notes from the WAV resources, a sample is named using the lower case italian name of the note (do#.wav for example).
+     * @param path the path of the resources
+     * @return the sample bank
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static SampleBank decode(final String path) throws IOException {
+        final EnumMap<NoteEnum, short[]> samples = new EnumMap<>(NoteEnum.class);
+        AudioFormat format = null;
+
+        for (final NoteEnum note : NoteEnum.values()) {
+            try (InputStream in = SampleBank.class.getResourceAsStream(path + note.getItalianName().toLowerCase(Locale.ROOT) + ".wav")) {
+                if (in == null) {
+                    LOGGER.info("No sound found for note: {}", note);
+
+                    continue;
+                }
+
+                try (AudioInputStream source = AudioSystem.getAudioInputStream(new BufferedInputStream(in))) {
+                    if (format == null) {
+                        format = toPcm(source.getFormat());
+                    }
+
+                    samples.put(note, decode(source, format));
+                }
+            } catch (final UnsupportedAudioFileException e) {
+                throw new IOException("Unsupported sound for note: " + note, e);
+            }
+        }
+
+        LOGGER.info("{} sounds decoded", String.valueOf(samples.size())); // NOSONAR Always written
+
+        return new SampleBank(format, samples);
+    }
+
+    /**
+     * Load the samples of the notes from the resources, using the packed file {@link #PACKED_NAME} if available, otherwise the WAV resources are decoded.
+     * @param path the path of the resources
+     * @return the sample bank
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static SampleBank load(final String path) throws IOException {
+        final SampleBank result = SampleBankFile.open(path + PACKED_NAME);
+
+        if (result != null) {
+            LOGGER.info("{} sounds mapped", String.valueOf(result.size())); // NOSONAR Always written
+
+            return result;
+        }
+
+        return decode(path);
+    }
+
+    /**
+     * Decode the stream into the given format.
+     * @param source the source
+     * @param format the format
+     * @return the PCM samples
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static short[] decode(final AudioInputStream source, final AudioFormat format) throws IOException {
+        final byte[] data;
+
+        if (source.getFormat().matches(format)) {
+            data = IOUtils.toByteArray(source);
+        } else {
+            try (AudioInputStream converted = AudioSystem.getAudioInputStream(format, source)) {
+                data = IOUtils.toByteArray(converted);
+            }
+        }
+
+        final short[] results = new short[data.length / 2];
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(results);
+
+        return results;
+    }
+
+    /**
+     * Returns the signed PCM format, using the rate and the channels of the given format.
+     * @param format the format
+     * @return the PCM format
+     */
+    private static AudioFormat toPcm(final AudioFormat format) {
+        if (AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) && format.getSampleSizeInBits() == SAMPLE_SIZE_IN_BITS && !format.isBigEndian()) {
+            return format;
+        }
+
+        return new AudioFormat(format.getSampleRate(), SAMPLE_SIZE_IN_BITS, format.getChannels(), true, false);
+    }
+
+    /** The format. */
+    private final AudioFormat format;
+
+    /** The lengths of the samples, in samples, indexed by note. */
+    private final int[] lengths = new int[NoteEnum.values().length];
+
+    /** The mapped packed file, null if the samples are decoded. */
+    private final ByteBuffer mapped;
+
+    /** The offsets of the samples in the mapped file, in bytes, indexed by note. */
+    private final long[] offsets;
+
+    /** The samples, indexed by note, copied from the mapped file when first requested. */
+    private final AtomicReferenceArray<short[]> samples = new AtomicReferenceArray<>(NoteEnum.values().length);
+
+    /** The size. */
+    private final int size;
+
+    /**
+     * Instantiates a new sample bank using the mapped packed file.
+     * @param format  the format
+     * @param mapped  the mapped file
+     * @param offsets the offsets of the samples, in bytes, indexed by note
+     * @param lengths the lengths of the samples, in samples, indexed by note, 0 if the note has no sample
+     */
+    SampleBank(final AudioFormat format, final ByteBuffer mapped, final long[] offsets, final int[] lengths) {
+        super();
+        this.format = format;
+        this.mapped = mapped;
+        this.offsets = offsets;
+        int count = 0;
+
+        for (int i = 0; i < this.lengths.length && i < lengths.length; i++) {
+            this.lengths[i] = lengths[i];
+
+            if (lengths[i] > 0) {
+                count++;
+            }
+        }
+
+        size = count;
+    }
+
+    /**
+     * Instantiates a new sample bank.
+     * @param format  the format
+     * @param samples the samples
+     */
+    private SampleBank(final AudioFormat format, final EnumMap<NoteEnum, short[]> samples) {
+        super();
+        this.format = format;
+        mapped = null;
+        offsets = null;
+
+        for (final EnumMap.Entry<NoteEnum, short[]> entry : samples.entrySet()) {
+            this.samples.set(entry.getKey().ordinal(), entry.getValue());
+            lengths[entry.getKey().ordinal()] = entry.getValue().length;
+        }
+
+        size = samples.size();
+    }
+
+    /**
+     * Gets the number of channels.
+     * @return the channels
+     */
+    public int getChannels() {
+        return format == null ? 0 : format.getChannels();
+    }
+
+    /**
+     * Gets the format of the frames.
+     * @return the format or null if the bank is empty
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the number of frames of the sample.
+     * @param note the note
+     * @return the number of frames or 0 if no sample is available for the note
+     */
+    public int getFrameLength(final NoteEnum note) {
+        final int length = lengths[note.ordinal()];
+
+        if (length == 0) {
+            return 0;
+        }
+
+        return length / format.getChannels();
+    }
+
+    /**
+     * Gets the PCM samples of the note, interleaved by channel, the array is shared and must not be modified.
+     * @param note the note
+     * @return the samples or null if no sample is available for the note
+     */
+    public short[] getSamples(final NoteEnum note) {
+        final int index = note.ordinal();
+        final short[] result = samples.get(index);
+
+        if (result != null || lengths[index] == 0) {
+            return result;
+        }
+
+        return copy(index);
+    }
+
+    /**
+     * Checks if is empty.
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if the bank is mapped from a packed file.
+     * @return true, if is mapped
+     */
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    /**
+     * Size.
+     * @return the number of samples
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the samples of the note from the mapped file, the pages of the file are read by the system on this first access.
+     * @param index the index of the note
+     * @return the samples
+     */
+    private short[] copy(final int index) {
+        final ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) offsets[index]);
+        buffer.limit((int) offsets[index] + lengths[index] * 2);
+        final short[] result = new short[lengths[index]];
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(result);
+
+        // concurrent loads of the same note keep the first copy, so the samples are always shared
+        if (samples.compareAndSet(index, null, result)) {
+            return result;
+        }
+
+        return samples.get(index);
+    }
+}
@@ -0,0 +1,248 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.infodavid.professore.core.NoteEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class SampleBankFile.<br>
+ * Packed file of a {@link SampleBank}, generated at build time from the WAV resources and memory mapped at runtime.<br>
+ * Layout (little endian): magic, version, sample rate (float), channels, number of entries, then one entry per note (offset in bytes as long, length in samples as int), then the 16 bits PCM samples of each note, aligned on {@link #ALIGNMENT} bytes.
+ */
+public final class SampleBankFile {
+
+    /** The Constant ALIGNMENT, the samples of a note start on a page so they are read only when the note is first played. */
+    public static final int ALIGNMENT = 4096;
+
+    /** The Constant ENTRY_SIZE. */
+    private static final int ENTRY_SIZE = 12;
+
+    /** The Constant HEADER_SIZE. */
+    private static final int HEADER_SIZE = 20;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleBankFile.class);
+
+    /** The Constant MAGIC, PSB1. */
+    private static final int MAGIC = 0x31425350;
+
+    /** The Constant OPENED, the banks opened from the resources, shared by all the players of the process. */
+    private static final Map<String, SampleBank> OPENED = new ConcurrentHashMap<>();
+
+    /** The Constant VERSION. */
+    private static final int VERSION = 1;
+
+    /**
+     * Generate the packed file from the WAV resources, used by the build.
+     * @param args the path of the WAV resources and the path of the packed file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: SampleBankFile <resources path> <packed file>");
+        }
+
+        final Path target = Paths.get(args[1]);
+        final SampleBank bank = SampleBank.decode(args[0]);
+
+        if (bank.isEmpty()) {
+            LOGGER.warn("No sound found in: {}, {} not written", args[0], target);
+
+            return;
+        }
+
+        write(bank, target);
+        LOGGER.info("{} sounds packed into: {}", String.valueOf(bank.size()), target); // NOSONAR Always written
+    }
+
+    /**
+     * Map the packed file.
+     * @param path the path of the packed file
+     * @return the sample bank
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static SampleBank map(final Path path) throws IOException {
+        final ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping remains valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a packed sample bank: " + path);
+        }
+
+        final float sampleRate = buffer.getFloat(8);
+        final int channels = buffer.getInt(12);
+        final int count = buffer.getInt(16);
+
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.capacity()) {
+            throw new IOException("Invalid number of entries in the packed sample bank: " + path);
+        }
+
+        final long[] offsets = new long[count];
+        final int[] lengths = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            offsets[i] = buffer.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+            lengths[i] = buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE + 8);
+
+            if (lengths[i] < 0 || offsets[i] < 0 || offsets[i] + lengths[i] * 2L > buffer.capacity()) {
+                throw new IOException("Invalid entry " + i + " in the packed sample bank: " + path);
+            }
+        }
+
+        return new SampleBank(new AudioFormat(sampleRate, SampleBank.SAMPLE_SIZE_IN_BITS, channels, true, false), buffer, offsets, lengths);
+    }
+
+    /**
+     * Open the packed file from the resources, a resource stored in an archive is first extracted to a temporary file.<br>
+     * The bank is opened once per process and shared, so the extraction and the samples copied from the mapping are not repeated by each player.
+     * @param resource the path of the resource
+     * @return the sample bank or null if the resource does not exist
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static SampleBank open(final String resource) throws IOException {
+        SampleBank result = OPENED.get(resource);
+
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (OPENED) {
+            result = OPENED.get(resource);
+
+            if (result == null) {
+                result = extract(resource);
+
+                if (result != null) {
+                    OPENED.put(resource, result);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the packed file.
+     * @param bank the bank
+     * @param path the path of the packed file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static void write(final SampleBank bank, final Path path) throws IOException {
+        final NoteEnum[] notes = NoteEnum.values();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + notes.length * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putFloat(bank.getFormat().getSampleRate()).putInt(bank.getChannels()).putInt(notes.length);
+        long offset = align(header.capacity());
+
+        for (final NoteEnum note : notes) {
+            final short[] data = bank.getSamples(note);
+            final int length = data == null ? 0 : data.length;
+            header.putLong(length == 0 ? 0 : offset).putInt(length);
+            offset = align(offset + length * 2L);
+        }
+
+        header.flip();
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            long position = align(header.capacity());
+
+            for (final NoteEnum note : notes) {
+                final short[] data = bank.getSamples(note);
+
+                if (data == null || data.length == 0) {
+                    continue;
+                }
+
+                final ByteBuffer buffer = ByteBuffer.allocate(data.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.asShortBuffer().put(data);
+                channel.position(position);
+                writeFully(channel, buffer);
+                position = align(position + buffer.capacity());
+            }
+        }
+    }
+
+    /**
+     * Align the offset.
+     * @param offset the offset
+     * @return the aligned offset
+     */
+    private static long align(final long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Extract the packed file from the resources if needed and map it.
+     * @param resource the path of the resource
+     * @return the sample bank or null if the resource does not exist
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static SampleBank extract(final String resource) throws IOException {
+        final URL url = SampleBankFile.class.getResource(resource);
+
+        if (url == null) {
+            return null;
+        }
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return map(Paths.get(url.toURI()));
+            } catch (final URISyntaxException e) {
+                throw new IOException("Invalid resource: " + url, e);
+            }
+        }
+
+        final Path file = Files.createTempFile("professore-", ".pcm");
+        file.toFile().deleteOnExit();
+
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return map(file);
+    }
+
+    /**
+     * Write the whole buffer.
+     * @param channel the channel
+     * @param buffer  the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Instantiates a new sample bank file.
+     */
+    private SampleBankFile() {
+        super();
+    }
+}
@@ -0,0 +1,433 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gs.collections.api.list.primitive.MutableLongList;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+
+/**
+ * The Class SequenceRenderer.<br>
+ * Offline renderer of a sequence into PCM frames using the samples of a {@link KeySampleBank}, as fast as the CPU allows.<br>
+ * Each note ON event starts the sample of its note at the frame computed from the tempo map of the sequence, note OFF events are ignored as the samples are played entirely.<br>
+ * In parallel mode, the piece is split in chunks rendered concurrently, each chunk starting the notes still sounding at its beginning. The result is identical to the sequential rendering unless voices are stolen.
+ */
+public final class SequenceRenderer {
+
+    /**
+     * The Class Schedule.<br>
+     * Note ON events of the sequence converted to frames, ordered by frame.
+     */
+    private static final class Schedule {
+
+        /** The frames. */
+        private final long[] frames;
+
+        /** The length, in frames. */
+        private final long length;
+
+        /** The maximum length of the samples, in frames. */
+        private final int maxSampleFrames;
+
+        /** The samples. */
+        private final short[][] samples;
+
+        /**
+         * Instantiates a new schedule.
+         * @param frames          the frames
+         * @param samples         the samples
+         * @param length          the length
+         * @param maxSampleFrames the maximum length of the samples
+         */
+        Schedule(final long[] frames, final short[][] samples, final long length, final int maxSampleFrames) {
+            this.frames = frames;
+            this.samples = samples;
+            this.length = length;
+            this.maxSampleFrames = maxSampleFrames;
+        }
+    }
+
+    /** The Constant DEFAULT_CHUNK_SECONDS. */
+    public static final int DEFAULT_CHUNK_SECONDS = 10;
+
+    /** The Constant DEFAULT_TEMPO, in microseconds per quarter note. */
+    private static final int DEFAULT_TEMPO = 500000;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequenceRenderer.class);
+
+    /** The Constant SET_TEMPO. */
+    private static final int SET_TEMPO = 0x51;
+
+    /**
+     * Find the index of the first frame greater or equal to the given one.
+     * @param frames the frames ordered
+     * @param frame  the frame
+     * @return the index
+     */
+    private static int firstIndex(final long[] frames, final long frame) {
+        int low = 0;
+        int high = frames.length;
+
+        while (low < high) {
+            final int middle = low + high >>> 1;
+
+            if (frames[middle] < frame) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Mix the next block, starting the notes scheduled before its end.
+     * @param schedule the schedule
+     * @param mixer    the mixer
+     * @param index    the index of the next note to start
+     * @param frame    the first frame of the block
+     * @param block    the block
+     * @return the index of the next note to start
+     */
+    private static int mix(final Schedule schedule, final VoiceMixer mixer, final int index, final long frame, final byte[] block) {
+        final long blockEnd = frame + mixer.getBlockFrames();
+        int i = index;
+
+        while (i < schedule.frames.length && schedule.frames[i] < blockEnd) {
+            // notes started before the frame and still sounding are started with a negative delay
+            if (schedule.frames[i] + schedule.samples[i].length / mixer.getChannels() > frame) {
+                mixer.start(schedule.samples[i], (int) (schedule.frames[i] - frame));
+            }
+
+            i++;
+        }
+
+        mixer.mix(block);
+
+        return i;
+    }
+
+    /**
+     * Write the buffer entirely to the channel.
+     * @param buffer  the buffer
+     * @param channel the channel
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void writeFully(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** The bank. */
+    private final SampleBank bank;
+
+    /** The samples of the MIDI keys. */
+    private final KeySampleBank keys;
+
+    /** The chunk frames. */
+    private final int chunkFrames;
+
+    /** The parallel. */
+    private boolean parallel;
+
+    /** The voices. */
+    private int voices = VoiceMixer.DEFAULT_VOICES;
+
+    /**
+     * Instantiates a new renderer, the keys without recorded sample are resampled using the linear interpolation.
+     * @param bank the sample bank
+     */
+    public SequenceRenderer(final SampleBank bank) {
+        this(new KeySampleBank(bank));
+    }
+
+    /**
+     * Instantiates a new renderer.
+     * @param keys the samples of the MIDI keys
+     */
+    public SequenceRenderer(final KeySampleBank keys) {
+        super();
+
+        if (keys == null || keys.getBank().isEmpty()) {
+            throw new IllegalArgumentException("Sample bank is empty");
+        }
+
+        this.keys = keys;
+        bank = keys.getBank();
+        chunkFrames = (int) bank.getFormat().getSampleRate() * DEFAULT_CHUNK_SECONDS;
+    }
+
+    /**
+     * Gets the format of the rendered frames.
+     * @return the format
+     */
+    public AudioFormat getFormat() {
+        return bank.getFormat();
+    }
+
+    /**
+     * Gets the number of frames rendered for the sequence.
+     * @param sequence the sequence
+     * @return the number of frames
+     */
+    public long getFrameLength(final Sequence sequence) {
+        return schedule(sequence).length;
+    }
+
+    /**
+     * Gets the number of voices.
+     * @return the voices
+     */
+    public int getVoices() {
+        return voices;
+    }
+
+    /**
+     * Checks if is parallel.
+     * @return true, if chunks are rendered in parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Render the sequence as PCM frames to the file, using the WAV format.
+     * @param sequence the sequence
+     * @param file     the file
+     * @return the number of rendered frames
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long render(final Sequence sequence, final Path file) throws IOException {
+        final Schedule schedule = schedule(sequence);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(Wav.header(bank.getFormat(), schedule.length * bank.getFormat().getFrameSize()), channel);
+
+            return render(schedule, channel);
+        }
+    }
+
+    /**
+     * Render the sequence as raw PCM frames to the channel.
+     * @param sequence the sequence
+     * @param channel  the channel
+     * @return the number of rendered frames
+     * @throws IOException Signals that an I/O exception has occurred.
+     * @see #getFormat()
+     */
+    public long render(final Sequence sequence, final WritableByteChannel channel) throws IOException {
+        return render(schedule(sequence), channel);
+    }
+
+    /**
+     * Sets the parallel mode.
+     * @param parallel true to render chunks of the piece in parallel
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Sets the number of voices.
+     * @param voices the voices
+     */
+    public void setVoices(final int voices) {
+        if (voices <= 0) {
+            this.voices = VoiceMixer.DEFAULT_VOICES;
+        } else {
+            this.voices = voices;
+        }
+    }
+
+    /**
+     * Render the frames of the chunk.
+     * @param schedule the schedule
+     * @param start    the first frame of the chunk
+     * @param end      the frame following the chunk
+     * @return the buffer of the PCM frames
+     */
+    private ByteBuffer render(final Schedule schedule, final long start, final long end) {
+        final VoiceMixer mixer = new VoiceMixer(voices, bank.getChannels(), VoiceMixer.DEFAULT_BLOCK_FRAMES);
+        final byte[] block = new byte[mixer.getBlockSize()];
+        final int frameSize = bank.getFormat().getFrameSize();
+        final ByteBuffer result = ByteBuffer.allocate((int) (end - start) * frameSize);
+        int index = firstIndex(schedule.frames, start - schedule.maxSampleFrames);
+
+        for (long frame = start; frame < end; frame += mixer.getBlockFrames()) {
+            index = mix(schedule, mixer, index, frame, block);
+            result.put(block, 0, (int) Math.min(block.length, (end - frame) * frameSize));
+        }
+
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Render the scheduled notes to the channel.
+     * @param schedule the schedule
+     * @param channel  the channel
+     * @return the number of rendered frames
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private long render(final Schedule schedule, final WritableByteChannel channel) throws IOException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Rendering {} notes into {} frames", String.valueOf(schedule.frames.length), String.valueOf(schedule.length));
+        }
+
+        if (!parallel) {
+            final VoiceMixer mixer = new VoiceMixer(voices, bank.getChannels(), VoiceMixer.DEFAULT_BLOCK_FRAMES);
+            final byte[] block = new byte[mixer.getBlockSize()];
+            final int frameSize = bank.getFormat().getFrameSize();
+            final ByteBuffer buffer = ByteBuffer.allocate(Math.max(block.length, chunkFrames / block.length * block.length));
+            int index = 0;
+
+            for (long frame = 0; frame < schedule.length; frame += mixer.getBlockFrames()) {
+                index = mix(schedule, mixer, index, frame, block);
+                buffer.put(block, 0, (int) Math.min(block.length, (schedule.length - frame) * frameSize));
+
+                if (buffer.remaining() < block.length) {
+                    buffer.flip();
+                    writeFully(buffer, channel);
+                    buffer.clear();
+                }
+            }
+
+            buffer.flip();
+            writeFully(buffer, channel);
+
+            return schedule.length;
+        }
+
+        // chunks are rendered by waves to bound the memory used by the pending buffers
+        final int wave = Math.max(1, ForkJoinPool.commonPool().getParallelism());
+        long start = 0;
+
+        while (start < schedule.length) {
+            final List<Callable<ByteBuffer>> tasks = new ArrayList<>(wave);
+
+            for (int i = 0; i < wave && start < schedule.length; i++) {
+                final long chunkStart = start;
+                final long chunkEnd = Math.min(schedule.length, start + chunkFrames);
+                tasks.add(() -> render(schedule, chunkStart, chunkEnd));
+                start = chunkEnd;
+            }
+
+            try {
+                for (final Future<ByteBuffer> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    writeFully(future.get(), channel);
+                }
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("Interrupted while rendering the chunks");
+            }
+        }
+
+        return schedule.length;
+    }
+
+    /**
+     * Convert the note ON events of the sequence to frames using its tempo map.
+     * @param sequence the sequence
+     * @return the schedule
+     */
+    private Schedule schedule(final Sequence sequence) {
+        // note ON events packed as tick << 7 | key and tempo changes packed as tick << 24 | tempo
+        final MutableLongList notes = new LongArrayList();
+        final MutableLongList tempoChanges = new LongArrayList();
+
+        for (final Track track : sequence.getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                final MidiEvent event = track.get(i);
+                final MidiMessage message = event.getMessage();
+
+                if (message instanceof ShortMessage) {
+                    final ShortMessage shortMessage = (ShortMessage) message;
+
+                    if (shortMessage.getCommand() == ShortMessage.NOTE_ON && shortMessage.getData2() > 0) {
+                        notes.add(event.getTick() << 7 | shortMessage.getData1());
+                    }
+                } else if (message instanceof MetaMessage && ((MetaMessage) message).getType() == SET_TEMPO) {
+                    final byte[] data = ((MetaMessage) message).getData();
+
+                    if (data.length >= 3) {
+                        tempoChanges.add(event.getTick() << 24 | (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF);
+                    }
+                }
+            }
+        }
+
+        notes.sortThis();
+        tempoChanges.sortThis();
+        final double framesPerMicrosecond = bank.getFormat().getSampleRate() / 1_000_000d;
+        final boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+        final double smpteMicrosecondsPerTick = ppq ? 0 : 1_000_000d / (sequence.getDivisionType() * sequence.getResolution());
+        final long[] frames = new long[notes.size()];
+        final short[][] samples = new short[notes.size()][];
+        int count = 0;
+        int maxSampleFrames = 0;
+        long length = 0;
+        // current tempo segment
+        int change = 0;
+        int tempo = DEFAULT_TEMPO;
+        long segmentTick = 0;
+        double segmentMicroseconds = 0;
+
+        for (int i = 0; i < notes.size(); i++) {
+            final long tick = notes.get(i) >>> 7;
+            final short[] data = keys.getSamples((int) (notes.get(i) & 0x7F));
+
+            while (ppq && change < tempoChanges.size() && tempoChanges.get(change) >>> 24 <= tick) {
+                final long changeTick = tempoChanges.get(change) >>> 24;
+                segmentMicroseconds += (double) (changeTick - segmentTick) * tempo / sequence.getResolution();
+                segmentTick = changeTick;
+                tempo = (int) (tempoChanges.get(change) & 0xFFFFFF);
+                change++;
+            }
+
+            if (data == null) {
+                continue;
+            }
+
+            final double microseconds = ppq ? segmentMicroseconds + (double) (tick - segmentTick) * tempo / sequence.getResolution() : tick * smpteMicrosecondsPerTick;
+            final long frame = Math.round(microseconds * framesPerMicrosecond);
+            final int sampleFrames = data.length / bank.getChannels();
+            frames[count] = frame;
+            samples[count] = data;
+            count++;
+            maxSampleFrames = Math.max(maxSampleFrames, sampleFrames);
+            length = Math.max(length, frame + sampleFrames);
+        }
+
+        return new Schedule(count == frames.length ? frames : Arrays.copyOf(frames, count), count == samples.length ? samples : Arrays.copyOf(samples, count), length, maxSampleFrames);
+    }
+}
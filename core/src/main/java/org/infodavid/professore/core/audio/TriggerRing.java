@@ -0,0 +1,131 @@
+package org.infodavid.professore.core.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Class TriggerRing.<br>
+ * Preallocated lock free ring of primitive triggers, read by a single consumer, usually the audio thread.<br>
+ * Each slot has a sequence number so producers claim slots using a compare and set: a single producer never retries and several producers remain safe.<br>
+ * Triggers must be non negative, for example events packed using {@link org.infodavid.professore.core.NoteEvent}.
+ */
+public final class TriggerRing {
+
+    /** The Constant EMPTY, returned by {@link #poll()} when the ring is empty. */
+    public static final long EMPTY = -1L;
+
+    /** The read position, only updated by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** The mask. */
+    private final int mask;
+
+    /** The sequences of the slots. */
+    private final AtomicLongArray sequences;
+
+    /** The write position, claimed by the producers. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The values. */
+    private final long[] values;
+
+    /**
+     * Instantiates a new ring.
+     * @param capacity the capacity, rounded up to a power of two
+     */
+    public TriggerRing(final int capacity) {
+        super();
+
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        final int length = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        mask = length - 1;
+        values = new long[length];
+        sequences = new AtomicLongArray(length);
+
+        for (int i = 0; i < length; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Gets the capacity.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Checks if is empty.
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Offer the trigger.
+     * @param value the trigger, non negative
+     * @return true, if added, false if the ring is full
+     */
+    public boolean offer(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Trigger must be non negative: " + value);
+        }
+
+        long position = tail.get();
+
+        while (true) {
+            final long difference = sequences.get((int) position & mask) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        final int index = (int) position & mask;
+        values[index] = value;
+        // volatile write, ordered with the following read of the state of the consumer by the producer
+        sequences.set(index, position + 1);
+
+        return true;
+    }
+
+    /**
+     * Poll the next trigger, must be called by the consumer only.
+     * @return the trigger or {@link #EMPTY}
+     */
+    public long poll() {
+        final long position = head.get();
+        final int index = (int) position & mask;
+
+        if (sequences.get(index) != position + 1) {
+            return EMPTY;
+        }
+
+        final long result = values[index];
+        sequences.lazySet(index, position + values.length);
+        head.lazySet(position + 1);
+
+        return result;
+    }
+
+    /**
+     * Size.
+     * @return the number of pending triggers
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,363 @@
+package org.infodavid.professore.core.audio;
+
+/**
+ * The Class VoiceMixer.<br>
+ * Software mixer using a fixed number of voices, each call to {@link #mix(byte[])} sums the active voices into one block of 16 bits little endian PCM frames.<br>
+ * When all the voices are busy, the oldest voice is stolen by the new sample. Buffers are allocated once, mixing does not allocate.<br>
+ * The gain and the pan are applied to the mixed samples, a change is ramped over one block to avoid clicks.<br>
+ * This class is not thread safe, it is used by the audio thread only.
+ */
+public final class VoiceMixer {
+
+    /** The Constant DEFAULT_BLOCK_FRAMES. */
+    public static final int DEFAULT_BLOCK_FRAMES = 512;
+
+    /** The Constant DEFAULT_VOICES. */
+    public static final int DEFAULT_VOICES = 16;
+
+    /**
+     * Saturate the value to the range of a 16 bits sample.
+     * @param value the value
+     * @return the saturated value
+     */
+    private static int saturate(final int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    /** The accumulator. */
+    private final int[] accumulator;
+
+    /** The number of active voices. */
+    private int active;
+
+    /** The block frames. */
+    private final int blockFrames;
+
+    /** The channels. */
+    private final int channels;
+
+    /** The counter used to order the voices by start. */
+    private long counter;
+
+    /** The gains of the channels applied to the current block. */
+    private final float[] currentGains;
+
+    /** The gain. */
+    private float gain = 1f;
+
+    /** The gains of the samples of the block, ramped when the gain or the pan change. */
+    private final float[] gains;
+
+    /** The pan. */
+    private float pan;
+
+    /** The positions of the voices, in samples, negative while the start of the voice is delayed. */
+    private final int[] positions;
+
+    /** The gains ramped, true when {@link #gains} must be filled again with constant gains. */
+    private boolean ramped;
+
+    /** The samples of the voices, null if the voice is free. */
+    private final short[][] samples;
+
+    /** The starts of the voices. */
+    private final long[] starts;
+
+    /** The stolen count. */
+    private long stolenCount;
+
+    /** The target gains of the channels, computed for each block. */
+    private final float[] targetGains;
+
+    /**
+     * Instantiates a new mixer.
+     * @param voices      the number of voices
+     * @param channels    the number of channels of the samples
+     * @param blockFrames the number of frames of a block
+     */
+    public VoiceMixer(final int voices, final int channels, final int blockFrames) {
+        super();
+
+        if (voices <= 0 || channels <= 0 || blockFrames <= 0) {
+            throw new IllegalArgumentException("Voices, channels and block frames must be positive");
+        }
+
+        this.channels = channels;
+        this.blockFrames = blockFrames;
+        accumulator = new int[blockFrames * channels];
+        positions = new int[voices];
+        samples = new short[voices][];
+        starts = new long[voices];
+        currentGains = new float[channels];
+        gains = new float[accumulator.length];
+        targetGains = new float[channels];
+
+        for (int c = 0; c < channels; c++) {
+            currentGains[c] = 1f;
+        }
+    }
+
+    /**
+     * Gets the number of active voices.
+     * @return the active voices
+     */
+    public int getActiveVoices() {
+        return active;
+    }
+
+    /**
+     * Gets the number of frames of a block.
+     * @return the block frames
+     */
+    public int getBlockFrames() {
+        return blockFrames;
+    }
+
+    /**
+     * Gets the size of a block, in bytes.
+     * @return the block size
+     */
+    public int getBlockSize() {
+        return accumulator.length * 2;
+    }
+
+    /**
+     * Gets the channels.
+     * @return the channels
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the gain.
+     * @return the gain, 1 for unity
+     */
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * Gets the pan.
+     * @return the pan, from -1 (left) to 1 (right)
+     */
+    public float getPan() {
+        return pan;
+    }
+
+    /**
+     * Gets the number of voices stolen since the creation of the mixer.
+     * @return the stolen count
+     */
+    public long getStolenCount() {
+        return stolenCount;
+    }
+
+    /**
+     * Gets the number of voices.
+     * @return the voices
+     */
+    public int getVoices() {
+        return samples.length;
+    }
+
+    /**
+     * Checks if is idle.
+     * @return true, if no voice is active
+     */
+    public boolean isIdle() {
+        return active == 0;
+    }
+
+    /**
+     * Mix the active voices into the block, the block is filled with silence when no voice is active.
+     * @param block the block of {@link #getBlockSize()} bytes at least
+     * @return the number of bytes written
+     */
+    public int mix(final byte[] block) {
+        sum();
+        applyGains();
+        int j = 0;
+
+        for (final int value : accumulator) {
+            final int sample = saturate(value);
+            block[j++] = (byte) sample;
+            block[j++] = (byte) (sample >> 8);
+        }
+
+        return j;
+    }
+
+    /**
+     * Mix the active voices into the block, the block is filled with silence when no voice is active.
+     * @param block the block of {@link #getBlockFrames()} multiplied by {@link #getChannels()} samples at least
+     * @return the number of samples written
+     */
+    public int mix(final short[] block) {
+        sum();
+        applyGains();
+
+        for (int i = 0; i < accumulator.length; i++) {
+            block[i] = (short) saturate(accumulator[i]);
+        }
+
+        return accumulator.length;
+    }
+
+    /**
+     * Sets the gain, applied from the next block.
+     * @param gain the gain, 1 for unity
+     */
+    public void setGain(final float gain) {
+        this.gain = Math.max(0f, gain);
+    }
+
+    /**
+     * Sets the pan, applied from the next block to a stereo output using a balance law, the centered pan keeps both channels at unity.
+     * @param pan the pan, from -1 (left) to 1 (right)
+     */
+    public void setPan(final float pan) {
+        this.pan = Math.max(-1f, Math.min(1f, pan));
+    }
+
+    /**
+     * Start a voice playing the samples at the beginning of the next block, the oldest voice is stolen if all the voices are busy.
+     * @param data the samples interleaved by channel
+     * @return the index of the voice
+     */
+    public int start(final short[] data) {
+        return start(data, 0);
+    }
+
+    /**
+     * Start a voice playing the samples, the oldest voice is stolen if all the voices are busy.
+     * @param data  the samples interleaved by channel
+     * @param delay the number of frames to wait from the beginning of the next block, a negative delay skips the first frames of the samples
+     * @return the index of the voice
+     */
+    public int start(final short[] data, final int delay) {
+        int voice = -1;
+        long oldest = Long.MAX_VALUE;
+
+        for (int i = 0; i < samples.length; i++) {
+            if (samples[i] == null) {
+                voice = i;
+
+                break;
+            }
+
+            if (starts[i] < oldest) {
+                oldest = starts[i];
+                voice = i;
+            }
+        }
+
+        if (samples[voice] == null) {
+            active++;
+        } else {
+            stolenCount++;
+        }
+
+        samples[voice] = data;
+        positions[voice] = -delay * channels;
+        starts[voice] = counter++;
+
+        return voice;
+    }
+
+    /**
+     * Stop all the voices.
+     */
+    public void stopAll() {
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = null;
+        }
+
+        active = 0;
+    }
+
+    /**
+     * Apply the gains of the channels to the accumulator, ramping from the previous gains when they change.
+     */
+    private void applyGains() {
+        final float[] targets = targetGains;
+        boolean changed = false;
+        boolean unity = true;
+
+        for (int c = 0; c < channels; c++) {
+            // balance law, only applied to the stereo output
+            targets[c] = channels == 2 ? gain * Math.min(1f, c == 0 ? 1f - pan : 1f + pan) : gain;
+            changed |= targets[c] != currentGains[c];
+            unity &= targets[c] == 1f;
+        }
+
+        if (changed) {
+            for (int c = 0; c < channels; c++) {
+                final float step = (targets[c] - currentGains[c]) / blockFrames;
+
+                for (int f = 0, i = c; f < blockFrames; f++, i += channels) {
+                    gains[i] = currentGains[c] + step * f;
+                }
+
+                currentGains[c] = targets[c];
+            }
+
+            ramped = true;
+        } else if (ramped) {
+            for (int c = 0; c < channels; c++) {
+                for (int i = c; i < gains.length; i += channels) {
+                    gains[i] = currentGains[c];
+                }
+            }
+
+            ramped = false;
+        } else if (unity) {
+            return;
+        }
+
+        final int[] acc = accumulator;
+
+        for (int i = 0; i < acc.length; i++) {
+            acc[i] = (int) (acc[i] * gains[i]);
+        }
+    }
+
+    /**
+     * Sum the active voices into the accumulator and release the completed voices.
+     */
+    private void sum() {
+        final int[] acc = accumulator;
+
+        for (int i = 0; i < acc.length; i++) {
+            acc[i] = 0;
+        }
+
+        if (active == 0) {
+            return;
+        }
+
+        for (int v = 0; v < samples.length; v++) {
+            final short[] data = samples[v];
+
+            if (data == null) {
+                continue;
+            }
+
+            final int position = positions[v];
+            final int from = position < 0 ? Math.min(acc.length, -position) : 0;
+            final int offset = Math.max(0, position);
+            final int length = Math.max(0, Math.min(acc.length - from, data.length - offset));
+
+            for (int i = 0; i < length; i++) {
+                acc[from + i] += data[offset + i];
+            }
+
+            if (position + acc.length >= data.length) {
+                samples[v] = null;
+                active--;
+            } else {
+                positions[v] = position + acc.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.infodavid.professore.core.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The Class Wav.<br>
+ * Header of the WAV files containing PCM frames.
+ */
+final class Wav {
+
+    /** The Constant HEADER_SIZE. */
+    static final int HEADER_SIZE = 44;
+
+    /** The Constant MAX_DATA_SIZE. */
+    static final long MAX_DATA_SIZE = 0xFFFFFFFFL - HEADER_SIZE + 8;
+
+    /**
+     * Build the header.
+     * @param format   the format of the frames
+     * @param dataSize the size of the data, in bytes
+     * @return the buffer ready to be written
+     */
+    static ByteBuffer header(final AudioFormat format, final long dataSize) {
+        if (dataSize > MAX_DATA_SIZE) {
+            throw new IllegalArgumentException("Data is too long for the WAV format: " + dataSize + " bytes");
+        }
+
+        final ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        result.putInt(0x46464952).putInt((int) (dataSize + HEADER_SIZE - 8)).putInt(0x45564157); // RIFF, size, WAVE
+        result.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) format.getChannels()); // fmt, size, PCM, channels
+        result.putInt((int) format.getSampleRate()).putInt((int) format.getSampleRate() * format.getFrameSize());
+        result.putShort((short) format.getFrameSize()).putShort((short) format.getSampleSizeInBits());
+        result.putInt(0x61746164).putInt((int) dataSize); // data, size
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Instantiates a new wav.
+     */
+    private Wav() {
+        super();
+    }
+}
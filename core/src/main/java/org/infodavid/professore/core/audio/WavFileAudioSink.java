@@ -0,0 +1,117 @@
+package org.infodavid.professore.core.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The Class WavFileAudioSink.<br>
+ * Sink writing the frames to a WAV file, the sizes of the header are written when the sink is closed.
+ */
+public class WavFileAudioSink implements AudioSink {
+
+    /** The channel. */
+    private FileChannel channel;
+
+    /** The data size. */
+    private long dataSize;
+
+    /** The file. */
+    private final Path file;
+
+    /** The format. */
+    private AudioFormat format;
+
+    /**
+     * Instantiates a new sink.
+     * @param file the file
+     */
+    public WavFileAudioSink(final Path file) {
+        super();
+        this.file = file;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.write(Wav.header(format, dataSize), 0);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Gets the size of the written data.
+     * @return the data size in bytes
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Gets the file.
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#getFormat()
+     */
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#open(javax.sound.sampled.AudioFormat, int)
+     */
+    @Override
+    public void open(final AudioFormat format, final int bufferSize) throws IOException {
+        this.format = format;
+        dataSize = 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header = Wav.header(format, 0);
+
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.audio.AudioSink#write(byte[], int, int)
+     */
+    @Override
+    public int write(final byte[] data, final int offset, final int length) throws IOException {
+        if (dataSize + length > Wav.MAX_DATA_SIZE) {
+            throw new IOException("Maximum size of the WAV file reached: " + file);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        dataSize += length;
+
+        return length;
+    }
+}
@@ -0,0 +1,63 @@
+package org.infodavid.professore.core.midi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The Interface MidiEventSink.<br>
+ * Receives the events decoded by the {@link MidiFileReader}, tracks are numbered from 1.<br>
+ * Each callback returns false to stop the reading.
+ */
+public interface MidiEventSink {
+
+    /**
+     * Header of the file.
+     * @param format   the format (0, 1 or 2)
+     * @param tracks   the number of tracks
+     * @param division the division, ticks per quarter note if positive, SMPTE format otherwise
+     * @return true to continue the reading
+     */
+    default boolean header(final int format, final int tracks, final int division) {
+        return true;
+    }
+
+    /**
+     * Meta event.<br>
+     * The data is only valid during the call and must not be modified.
+     * @param track  the track
+     * @param tick   the tick
+     * @param type   the meta type
+     * @param data   the buffer containing the data
+     * @param offset the offset of the data in the buffer
+     * @param length the length of the data
+     * @return true to continue the reading
+     */
+    default boolean meta(final int track, final long tick, final int type, final ByteBuffer data, final int offset, final int length) {
+        return true;
+    }
+
+    /**
+     * Channel message, running status is already resolved.
+     * @param track  the track
+     * @param tick   the tick
+     * @param status the status byte including the channel
+     * @param data1  the first data byte
+     * @param data2  the second data byte or 0 if the message has only one data byte
+     * @return true to continue the reading
+     */
+    boolean shortMessage(int track, long tick, int status, int data1, int data2);
+
+    /**
+     * System exclusive event (0xF0 or 0xF7).<br>
+     * The data is only valid during the call and must not be modified.
+     * @param track  the track
+     * @param tick   the tick
+     * @param status the status byte
+     * @param data   the buffer containing the data
+     * @param offset the offset of the data in the buffer
+     * @param length the length of the data
+     * @return true to continue the reading
+     */
+    default boolean sysex(final int track, final long tick, final int status, final ByteBuffer data, final int offset, final int length) {
+        return true;
+    }
+}
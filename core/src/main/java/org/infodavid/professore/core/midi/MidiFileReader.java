@@ -0,0 +1,327 @@
+package org.infodavid.professore.core.midi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class MidiFileReader.<br>
+ * Streaming reader of Standard MIDI Files decoding the events directly from a memory-mapped buffer into a {@link MidiEventSink}, without creating objects per event.<br>
+ * Running status, meta events, system exclusive events and multiple tracks are supported, unknown chunks are skipped.
+ */
+public final class MidiFileReader {
+
+    /** The Constant END_OF_TRACK. */
+    public static final int END_OF_TRACK = 0x2F;
+
+    /** The Constant HEADER_CHUNK. */
+    private static final int HEADER_CHUNK = 0x4D546864; // MThd
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MidiFileReader.class);
+
+    /** The Constant META. */
+    private static final int META = 0xFF;
+
+    /** The Constant SYSEX. */
+    private static final int SYSEX = 0xF0;
+
+    /** The Constant SYSEX_ESCAPE. */
+    private static final int SYSEX_ESCAPE = 0xF7;
+
+    /** The Constant TRACK_CHUNK. */
+    private static final int TRACK_CHUNK = 0x4D54726B; // MTrk
+
+    /**
+     * Read the buffer from its position up to its limit.
+     * @param buffer the buffer
+     * @param sink   the sink
+     * @return true if the whole content has been read, false if the sink stopped the reading
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static boolean read(final ByteBuffer buffer, final MidiEventSink sink) throws InvalidMidiDataException {
+        try {
+            return readChunks(buffer, sink);
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidMidiDataException("Truncated MIDI data at position: " + buffer.position());
+        }
+    }
+
+    /**
+     * Map the file in memory.
+     * @param file the file
+     * @return the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static MappedByteBuffer map(final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(file.toAbsolutePath().toString());
+        }
+
+        final MappedByteBuffer result;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Mapped {} bytes from file: {}", String.valueOf(result.limit()), file.toAbsolutePath());
+        }
+
+        return result;
+    }
+
+    /**
+     * Read the file.
+     * @param file the file
+     * @param sink the sink
+     * @return true if the whole file has been read, false if the sink stopped the reading
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static boolean read(final Path file, final MidiEventSink sink) throws IOException, InvalidMidiDataException {
+        return read(map(file), sink);
+    }
+
+    /**
+     * Read the events of a track returned by {@link #splitTracks(ByteBuffer)}, the header callback of the sink is not invoked.
+     * @param track  the buffer of the track, from its position up to its limit
+     * @param number the number of the track, starting from 1
+     * @param sink   the sink
+     * @return true if the whole track has been read, false if the sink stopped the reading
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static boolean readTrack(final ByteBuffer track, final int number, final MidiEventSink sink) throws InvalidMidiDataException {
+        try {
+            return readEvents(track, track.limit(), number, sink);
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidMidiDataException("Truncated MIDI data at position: " + track.position());
+        }
+    }
+
+    /**
+     * Split the content of the buffer into its tracks, the buffer position is not modified.
+     * @param buffer the buffer
+     * @return the buffers of the tracks, in the order of the file
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static ByteBuffer[] splitTracks(final ByteBuffer buffer) throws InvalidMidiDataException {
+        final ByteBuffer view = buffer.duplicate();
+        final List<ByteBuffer> results = new ArrayList<>();
+
+        try {
+            readHeader(view, null);
+
+            while (view.remaining() >= 8) {
+                final int type = view.getInt();
+                final int end = chunkEnd(view);
+
+                if (type == TRACK_CHUNK) {
+                    final ByteBuffer track = view.duplicate();
+                    track.limit(end);
+                    results.add(track.slice());
+                }
+
+                view.position(end);
+            }
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidMidiDataException("Truncated MIDI data at position: " + view.position());
+        }
+
+        return results.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * Read the length of the chunk and compute its end position.
+     * @param buffer the buffer positioned on the length of the chunk
+     * @return the end position
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static int chunkEnd(final ByteBuffer buffer) throws InvalidMidiDataException {
+        final long length = buffer.getInt() & 0xFFFFFFFFL;
+
+        if (length > buffer.remaining()) {
+            throw new InvalidMidiDataException("Chunk length exceeds the data: " + length);
+        }
+
+        return buffer.position() + (int) length;
+    }
+
+    /**
+     * Read the number of data bytes of the channel message.
+     * @param status the status
+     * @return the number of data bytes
+     */
+    private static int dataLength(final int status) {
+        final int command = status & 0xF0;
+
+        return command == 0xC0 || command == 0xD0 ? 1 : 2;
+    }
+
+    /**
+     * Read the chunks.
+     * @param buffer the buffer
+     * @param sink   the sink
+     * @return true if the whole content has been read
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static boolean readChunks(final ByteBuffer buffer, final MidiEventSink sink) throws InvalidMidiDataException {
+        if (!readHeader(buffer, sink)) {
+            return false;
+        }
+
+        int track = 0;
+
+        while (buffer.remaining() >= 8) {
+            final int type = buffer.getInt();
+            final int end = chunkEnd(buffer);
+
+            if (type == TRACK_CHUNK) {
+                track++;
+
+                if (!readEvents(buffer, end, track, sink)) {
+                    return false;
+                }
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Skipping unknown chunk: {}", Integer.toHexString(type));
+            }
+
+            buffer.position(end);
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the header chunk.
+     * @param buffer the buffer
+     * @param sink   the sink or null
+     * @return true to continue the reading
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static boolean readHeader(final ByteBuffer buffer, final MidiEventSink sink) throws InvalidMidiDataException {
+        if (buffer.remaining() < 14 || buffer.getInt() != HEADER_CHUNK) {
+            throw new InvalidMidiDataException("Not a standard MIDI file");
+        }
+
+        final int headerLength = buffer.getInt();
+
+        if (headerLength < 6) {
+            throw new InvalidMidiDataException("Invalid header length: " + headerLength);
+        }
+
+        final int format = buffer.getShort() & 0xFFFF;
+        final int tracks = buffer.getShort() & 0xFFFF;
+        final int division = buffer.getShort();
+        buffer.position(buffer.position() + headerLength - 6);
+
+        return sink == null || sink.header(format, tracks, division);
+    }
+
+    /**
+     * Read the events of a track.
+     * @param buffer the buffer
+     * @param end    the end position of the track
+     * @param track  the track number
+     * @param sink   the sink
+     * @return true to continue the reading
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static boolean readEvents(final ByteBuffer buffer, final int end, final int track, final MidiEventSink sink) throws InvalidMidiDataException {
+        long tick = 0;
+        int runningStatus = 0;
+
+        while (buffer.position() < end) {
+            tick += readVariableLength(buffer);
+            int status = buffer.get() & 0xFF;
+
+            if (status < 0x80) {
+                // running status, the byte is the first data byte
+                if (runningStatus == 0) {
+                    throw new InvalidMidiDataException("Data byte without status at position: " + (buffer.position() - 1));
+                }
+
+                buffer.position(buffer.position() - 1);
+                status = runningStatus;
+            }
+
+            if (status == META) {
+                runningStatus = 0;
+                final int type = buffer.get() & 0xFF;
+                final int length = (int) readVariableLength(buffer);
+                final int offset = buffer.position();
+                buffer.position(offset + length);
+
+                if (!sink.meta(track, tick, type, buffer, offset, length)) {
+                    return false;
+                }
+
+                if (type == END_OF_TRACK) {
+                    break;
+                }
+            } else if (status == SYSEX || status == SYSEX_ESCAPE) {
+                runningStatus = 0;
+                final int length = (int) readVariableLength(buffer);
+                final int offset = buffer.position();
+                buffer.position(offset + length);
+
+                if (!sink.sysex(track, tick, status, buffer, offset, length)) {
+                    return false;
+                }
+            } else if (status >= SYSEX) {
+                throw new InvalidMidiDataException("Unexpected system message in track: " + Integer.toHexString(status));
+            } else {
+                runningStatus = status;
+                final int data1 = buffer.get() & 0x7F;
+                final int data2 = dataLength(status) == 2 ? buffer.get() & 0x7F : 0;
+
+                if (!sink.shortMessage(track, tick, status, data1, data2)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read a variable length quantity.
+     * @param buffer the buffer
+     * @return the value
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static long readVariableLength(final ByteBuffer buffer) throws InvalidMidiDataException {
+        long result = 0;
+
+        for (int i = 0; i < 4; i++) {
+            final int b = buffer.get();
+            result = result << 7 | b & 0x7F;
+
+            if (b >= 0) {
+                return result;
+            }
+        }
+
+        throw new InvalidMidiDataException("Variable length quantity exceeds 4 bytes at position: " + buffer.position());
+    }
+
+    /**
+     * Instantiates a new midi file reader.
+     */
+    private MidiFileReader() {
+        super();
+    }
+}
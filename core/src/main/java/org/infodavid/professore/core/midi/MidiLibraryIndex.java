@@ -0,0 +1,615 @@
+package org.infodavid.professore.core.midi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+import org.infodavid.professore.core.Constants;
+import org.infodavid.professore.core.MidiKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gs.collections.api.list.primitive.MutableIntList;
+import com.gs.collections.api.list.primitive.MutableLongList;
+import com.gs.collections.impl.list.mutable.primitive.IntArrayList;
+import com.gs.collections.impl.list.mutable.primitive.LongArrayList;
+
+/**
+ * The Class MidiLibraryIndex.<br>
+ * Compact binary index of the MIDI files of a directory, memory-mapped when opened so queries do not parse any MIDI file.<br>
+ * The index starts with a header (magic, version, number of entries), followed by fixed size records sorted by relative path and the UTF-8 encoded relative paths.<br>
+ * Each record stores the size and last modification time of the file, its duration, initial tempo, number of notes, key range, number of tracks and the histogram of the notes by pitch class.
+ */
+public final class MidiLibraryIndex {
+
+    /**
+     * The Class Entry, statistics of a file collected while building the index.
+     */
+    private static final class Entry {
+
+        /** The duration in microseconds. */
+        private long duration;
+
+        /** The histogram. */
+        private final int[] histogram = new int[12];
+
+        /** The highest key. */
+        private int highestKey = -1;
+
+        /** The last modified time in milliseconds. */
+        private long lastModified;
+
+        /** The lowest key. */
+        private int lowestKey = -1;
+
+        /** The name. */
+        private byte[] name;
+
+        /** The note count. */
+        private int noteCount;
+
+        /** The size. */
+        private long size;
+
+        /** The tempo in microseconds per quarter note. */
+        private int tempo = DEFAULT_TEMPO;
+
+        /** The track count. */
+        private int trackCount;
+    }
+
+    /**
+     * The Class StatisticsSink, computes the statistics of a file from the decoded events.
+     */
+    private static final class StatisticsSink implements MidiEventSink {
+
+        /** The division. */
+        private int division;
+
+        /** The entry. */
+        private final Entry entry;
+
+        /** The last tick. */
+        private long lastTick;
+
+        /** The tempo changes, packed as tick &lt;&lt; 24 | tempo. */
+        private final MutableLongList tempoChanges = new LongArrayList();
+
+        /**
+         * Instantiates a new statistics sink.
+         * @param entry the entry
+         */
+        StatisticsSink(final Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Complete the statistics once the file has been read.
+         */
+        void complete() {
+            if (division < 0) {
+                // SMPTE division: frames per second in the high byte (negative), ticks per frame in the low byte
+                final int framesPerSecond = -(division >> 8);
+                final int ticksPerFrame = division & 0xFF;
+                entry.duration = framesPerSecond * ticksPerFrame == 0 ? 0 : lastTick * 1_000_000L / (framesPerSecond * ticksPerFrame);
+
+                return;
+            }
+
+            if (division == 0) {
+                return;
+            }
+
+            tempoChanges.sortThis();
+            long duration = 0;
+            long previousTick = 0;
+            int tempo = DEFAULT_TEMPO;
+
+            for (int i = 0; i < tempoChanges.size(); i++) {
+                final long tick = tempoChanges.get(i) >>> 24;
+
+                if (tick > lastTick) {
+                    break;
+                }
+
+                duration += (tick - previousTick) * tempo / division;
+                previousTick = tick;
+                tempo = (int) (tempoChanges.get(i) & 0xFFFFFF);
+
+                if (tick == 0) {
+                    entry.tempo = tempo;
+                }
+            }
+
+            entry.duration = duration + (lastTick - previousTick) * tempo / division;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#header(int, int, int)
+         */
+        @Override
+        public boolean header(final int format, final int tracks, final int division) {
+            this.division = division;
+            entry.trackCount = tracks;
+
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#meta(int, long, int, java.nio.ByteBuffer, int, int)
+         */
+        @Override
+        public boolean meta(final int track, final long tick, final int type, final ByteBuffer data, final int offset, final int length) {
+            update(tick);
+
+            if (type == TEMPO && length == 3) {
+                final int tempo = (data.get(offset) & 0xFF) << 16 | (data.get(offset + 1) & 0xFF) << 8 | data.get(offset + 2) & 0xFF;
+                tempoChanges.add(tick << 24 | tempo);
+            }
+
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#shortMessage(int, long, int, int, int)
+         */
+        @Override
+        public boolean shortMessage(final int track, final long tick, final int status, final int data1, final int data2) {
+            update(tick);
+
+            if ((status & 0xF0) == ShortMessage.NOTE_ON && data2 > 0) {
+                entry.noteCount++;
+                entry.histogram[MidiKeys.getPitchClass(data1)]++;
+
+                if (entry.lowestKey < 0 || data1 < entry.lowestKey) {
+                    entry.lowestKey = data1;
+                }
+
+                if (data1 > entry.highestKey) {
+                    entry.highestKey = data1;
+                }
+            }
+
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#sysex(int, long, int, java.nio.ByteBuffer, int, int)
+         */
+        @Override
+        public boolean sysex(final int track, final long tick, final int status, final ByteBuffer data, final int offset, final int length) {
+            update(tick);
+
+            return true;
+        }
+
+        /**
+         * Update the last tick.
+         * @param tick the tick
+         */
+        private void update(final long tick) {
+            if (tick > lastTick) {
+                lastTick = tick;
+            }
+        }
+    }
+
+    /** The Constant DEFAULT_TEMPO, 120 BPM. */
+    public static final int DEFAULT_TEMPO = 500_000;
+
+    /** The Constant HEADER_SIZE. */
+    private static final int HEADER_SIZE = 16;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MidiLibraryIndex.class);
+
+    /** The Constant MAGIC. */
+    private static final int MAGIC = 0x50494458; // PIDX
+
+    /** The Constant RECORD_SIZE. */
+    private static final int RECORD_SIZE = 96;
+
+    /** The Constant TEMPO. */
+    private static final int TEMPO = 0x51;
+
+    /** The Constant VERSION. */
+    private static final int VERSION = 1;
+
+    /**
+     * Builds the index of the MIDI files found in the directory and its sub directories, the files are parsed in parallel.
+     * @param directory   the directory
+     * @param index       the index file
+     * @param incremental true to reuse the statistics of the existing index for files having the same size and last modification time
+     * @return the opened index
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static MidiLibraryIndex build(final Path directory, final Path index, final boolean incremental) throws IOException {
+        final MidiLibraryIndex previous = incremental && Files.isRegularFile(index) ? open(index) : null;
+        final List<Path> files;
+
+        try (Stream<Path> stream = Files.walk(directory)) {
+            files = stream.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(Constants.MID_EXTENSION)).collect(Collectors.toList());
+        }
+
+        LOGGER.info("Indexing {} files from directory: {}", String.valueOf(files.size()), directory.toAbsolutePath());
+        final Entry[] entries = files.parallelStream().map(p -> index(directory, p, previous)).filter(Objects::nonNull).sorted(Comparator.comparing(e -> e.name, Arrays::compareUnsigned)).toArray(Entry[]::new);
+        write(entries, index);
+        LOGGER.info("{} files indexed", String.valueOf(entries.length));
+
+        return open(index);
+    }
+
+    /**
+     * Open the index.
+     * @param index the index file
+     * @return the index
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static MidiLibraryIndex open(final Path index) throws IOException {
+        final MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a MIDI library index: " + index.toAbsolutePath());
+        }
+
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported MIDI library index version: " + buffer.getInt(4));
+        }
+
+        return new MidiLibraryIndex(buffer);
+    }
+
+    /**
+     * Index the file.
+     * @param directory the directory
+     * @param file      the file
+     * @param previous  the previous index or null
+     * @return the entry or null if file cannot be read
+     */
+    private static Entry index(final Path directory, final Path file, final MidiLibraryIndex previous) {
+        final Entry result = new Entry();
+        result.name = directory.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8);
+
+        try {
+            result.size = Files.size(file);
+            result.lastModified = Files.getLastModifiedTime(file).toMillis();
+
+            if (previous != null) {
+                final int i = previous.indexOf(result.name);
+
+                if (i >= 0 && previous.getFileSize(i) == result.size && previous.getLastModified(i) == result.lastModified) {
+                    previous.copy(i, result);
+
+                    return result;
+                }
+            }
+
+            final StatisticsSink sink = new StatisticsSink(result);
+            MidiFileReader.read(file, sink);
+            sink.complete();
+
+            return result;
+        } catch (final IOException | InvalidMidiDataException e) {
+            LOGGER.warn("Cannot index file: {} ({})", file.toAbsolutePath(), e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Write the entries to the index file, the file is replaced atomically when supported.
+     * @param entries the sorted entries
+     * @param index   the index file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void write(final Entry[] entries, final Path index) throws IOException {
+        int namesLength = 0;
+
+        for (final Entry entry : entries) {
+            namesLength += entry.name.length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.length * RECORD_SIZE + namesLength);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(entries.length).putInt(0);
+        int nameOffset = HEADER_SIZE + entries.length * RECORD_SIZE;
+
+        for (final Entry entry : entries) {
+            final int position = buffer.position();
+            buffer.putLong(entry.size).putLong(entry.lastModified).putLong(entry.duration);
+            buffer.putInt(entry.tempo).putInt(entry.noteCount);
+            buffer.put((byte) entry.lowestKey).put((byte) entry.highestKey).putShort((short) entry.trackCount);
+
+            for (final int count : entry.histogram) {
+                buffer.putInt(count);
+            }
+
+            buffer.putInt(nameOffset).putInt(entry.name.length);
+            buffer.position(position + RECORD_SIZE);
+            nameOffset += entry.name.length;
+        }
+
+        for (final Entry entry : entries) {
+            buffer.put(entry.name);
+        }
+
+        buffer.flip();
+        final Path parent = index.toAbsolutePath().getParent();
+        final Path temporary = Files.createTempFile(parent, index.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            try {
+                Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (@SuppressWarnings("unused") final AtomicMoveNotSupportedException e) {
+                Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /** The buffer. */
+    private final ByteBuffer buffer;
+
+    /** The size. */
+    private final int size;
+
+    /**
+     * Instantiates a new MIDI library index.
+     * @param buffer the buffer
+     */
+    private MidiLibraryIndex(final ByteBuffer buffer) {
+        super();
+        this.buffer = buffer;
+        size = buffer.getInt(8);
+    }
+
+    /**
+     * Find the entries having all their notes in the given key range.
+     * @param lowestKey  the lowest key
+     * @param highestKey the highest key
+     * @return the indexes of the entries
+     */
+    public int[] findByKeyRange(final int lowestKey, final int highestKey) {
+        final MutableIntList results = new IntArrayList();
+
+        for (int i = 0; i < size; i++) {
+            final int position = HEADER_SIZE + i * RECORD_SIZE;
+            final int lowest = buffer.get(position + 32) & 0xFF;
+            final int highest = buffer.get(position + 33) & 0xFF;
+
+            if (getNoteCount(i) > 0 && lowest >= lowestKey && highest <= highestKey) {
+                results.add(i);
+            }
+        }
+
+        return results.toArray();
+    }
+
+    /**
+     * Gets the duration.
+     * @param index the index of the entry
+     * @return the duration in microseconds
+     */
+    public long getDuration(final int index) {
+        return buffer.getLong(record(index) + 16);
+    }
+
+    /**
+     * Gets the size of the file.
+     * @param index the index of the entry
+     * @return the size in bytes
+     */
+    public long getFileSize(final int index) {
+        return buffer.getLong(record(index));
+    }
+
+    /**
+     * Gets the highest key.
+     * @param index the index of the entry
+     * @return the highest key or -1 if file has no note
+     */
+    public int getHighestKey(final int index) {
+        return getNoteCount(index) == 0 ? -1 : buffer.get(record(index) + 33) & 0xFF;
+    }
+
+    /**
+     * Gets the last modification time of the file.
+     * @param index the index of the entry
+     * @return the time in milliseconds
+     */
+    public long getLastModified(final int index) {
+        return buffer.getLong(record(index) + 8);
+    }
+
+    /**
+     * Gets the lowest key.
+     * @param index the index of the entry
+     * @return the lowest key or -1 if file has no note
+     */
+    public int getLowestKey(final int index) {
+        return getNoteCount(index) == 0 ? -1 : buffer.get(record(index) + 32) & 0xFF;
+    }
+
+    /**
+     * Gets the number of notes.
+     * @param index the index of the entry
+     * @return the number of notes
+     */
+    public int getNoteCount(final int index) {
+        return buffer.getInt(record(index) + 28);
+    }
+
+    /**
+     * Gets the path of the file relative to the indexed directory.
+     * @param index the index of the entry
+     * @return the path
+     */
+    public String getPath(final int index) {
+        final int position = record(index);
+        final byte[] name = new byte[buffer.getInt(position + 88)];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(buffer.getInt(position + 84));
+        view.get(name);
+
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of notes having the given pitch class.
+     * @param index      the index of the entry
+     * @param pitchClass the pitch class, 0 for DO up to 11 for SI
+     * @return the number of notes
+     */
+    public int getPitchClassCount(final int index, final int pitchClass) {
+        if (pitchClass < 0 || pitchClass >= 12) {
+            throw new IndexOutOfBoundsException("Pitch class: " + pitchClass);
+        }
+
+        return buffer.getInt(record(index) + 36 + pitchClass * 4);
+    }
+
+    /**
+     * Gets the initial tempo.
+     * @param index the index of the entry
+     * @return the tempo in microseconds per quarter note
+     */
+    public int getTempo(final int index) {
+        return buffer.getInt(record(index) + 24);
+    }
+
+    /**
+     * Gets the number of tracks.
+     * @param index the index of the entry
+     * @return the number of tracks
+     */
+    public int getTrackCount(final int index) {
+        return buffer.getShort(record(index) + 34) & 0xFFFF;
+    }
+
+    /**
+     * Find the entry of the file using a binary search.
+     * @param path the path of the file relative to the indexed directory
+     * @return the index of the entry or a negative value if not found
+     */
+    public int indexOf(final String path) {
+        return indexOf(path.replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Size.
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the statistics of the entry.
+     * @param index  the index of the entry
+     * @param target the target
+     */
+    private void copy(final int index, final Entry target) {
+        target.duration = getDuration(index);
+        target.tempo = getTempo(index);
+        target.noteCount = getNoteCount(index);
+        target.lowestKey = getLowestKey(index);
+        target.highestKey = getHighestKey(index);
+        target.trackCount = getTrackCount(index);
+
+        for (int i = 0; i < target.histogram.length; i++) {
+            target.histogram[i] = getPitchClassCount(index, i);
+        }
+    }
+
+    /**
+     * Compare the name of the entry with the given UTF-8 bytes.
+     * @param index the index of the entry
+     * @param name  the name
+     * @return the comparison result
+     */
+    private int compareName(final int index, final byte[] name) {
+        final int position = HEADER_SIZE + index * RECORD_SIZE;
+        final int offset = buffer.getInt(position + 84);
+        final int length = buffer.getInt(position + 88);
+        final int count = Math.min(length, name.length);
+
+        for (int i = 0; i < count; i++) {
+            final int result = Integer.compare(buffer.get(offset + i) & 0xFF, name[i] & 0xFF);
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return Integer.compare(length, name.length);
+    }
+
+    /**
+     * Find the entry using a binary search.
+     * @param name the UTF-8 encoded relative path
+     * @return the index of the entry or a negative value if not found
+     */
+    private int indexOf(final byte[] name) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            final int middle = low + high >>> 1;
+            final int result = compareName(middle, name);
+
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Gets the position of the record.
+     * @param index the index of the entry
+     * @return the position
+     */
+    private int record(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
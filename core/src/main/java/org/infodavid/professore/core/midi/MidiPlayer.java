@@ -1,53 +1,186 @@
 package org.infodavid.professore.core.midi;
 
 import java.io.Closeable;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.MidiMessage;
-import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.ShortMessage;
-import javax.sound.midi.Track;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.infodavid.professore.core.Note;
 import org.infodavid.professore.core.NotePool;
+import org.infodavid.professore.core.NoteSequence;
+import org.infodavid.professore.core.ThreadProfile;
+import org.infodavid.professore.core.audio.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class MidiPlayer.
+ * The Class MidiPlayer.<br>
+ * The {@link ThreadProfile} selects the kind of threads used to wait for the play list, load the files and call the listener, the events are always dispatched by a platform thread.
  */
 public class MidiPlayer implements Closeable {
 
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(MidiPlayer.class);
 
+    /**
+     * Extract the note event into the sequence.
+     * @param sequence the sequence
+     * @param track    the track
+     * @param tick     the tick
+     * @param status   the status
+     * @param data1    the first data byte
+     * @param data2    the second data byte
+     * @return true
+     */
+    private static boolean extract(final NoteSequence sequence, final int track, final long tick, final int status, final int data1, final int data2) {
+        final int command = status & 0xF0;
+
+        if (command == ShortMessage.NOTE_ON || command == ShortMessage.NOTE_OFF) {
+            sequence.add(tick, (byte) track, (byte) (status & 0x0F), (byte) data1, (short) data2, command == ShortMessage.NOTE_ON);
+        }
+
+        return true;
+    }
+
+    /**
+     * Extract the tracks on the fork/join pool and merge their events in tick order.
+     * @param tracks the buffers of the tracks
+     * @return the note sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static NoteSequence extractInParallel(final ByteBuffer[] tracks) throws IOException, InvalidMidiDataException {
+        final List<Callable<NoteSequence>> tasks = new ArrayList<>(tracks.length);
+
+        for (int i = 0; i < tracks.length; i++) {
+            final ByteBuffer track = tracks[i];
+            final int number = i + 1;
+            tasks.add(() -> {
+                final NoteSequence result = new NoteSequence(track.remaining() / 4);
+                MidiFileReader.readTrack(track, number, (t, tick, status, data1, data2) -> extract(result, t, tick, status, data1, data2));
+
+                return result;
+            });
+        }
+
+        final NoteSequence[] results = new NoteSequence[tracks.length];
+        int i = 0;
+
+        try {
+            for (final Future<NoteSequence> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                results[i++] = future.get();
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof InvalidMidiDataException) {
+                throw (InvalidMidiDataException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } catch (@SuppressWarnings("unused") final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while extracting the tracks");
+        }
+
+        return NoteSequence.merge(results);
+    }
+
+    /**
+     * Extract the notes of the file.
+     * @param file     the file
+     * @param parallel true to extract the tracks in parallel
+     * @return the note sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static NoteSequence extract(final Path file, final boolean parallel) throws IOException, InvalidMidiDataException {
+        LOGGER.info("Extracting notes from file: {}", file.toAbsolutePath());
+        final ByteBuffer buffer = MidiFileReader.map(file);
+        final NoteSequence results;
+
+        if (parallel) {
+            results = extractInParallel(MidiFileReader.splitTracks(buffer));
+        } else {
+            // a note event uses 3 bytes at least when running status is used
+            final NoteSequence sequence = new NoteSequence(buffer.remaining() / 4);
+            MidiFileReader.read(buffer, (track, tick, status, data1, data2) -> extract(sequence, track, tick, status, data1, data2));
+            results = sequence;
+        }
+
+        results.trimToSize();
+        LOGGER.info("Completed");
+
+        return results;
+    }
+
+    /** The cache, disabled by default. */
+    private volatile SequenceCache cache = null;
+
+    /** The dispatcher, platform thread dispatching the events when the runnable uses a virtual thread, null otherwise. */
+    private final ExecutorService dispatcher;
+
     /** The runnable. */
     private final MidiPlayerRunnable runnable;
 
     /** The executor. */
     private final ThreadPoolExecutor executor;
 
+    /** The parallel. */
+    private final AtomicBoolean parallel = new AtomicBoolean(false);
+
+    /** The thread profile. */
+    private final ThreadProfile threadProfile;
+
     /**
-     * Instantiates a new player.
+     * Instantiates a new player using the default thread profile.
      * @param controller the controller
+     * @see ThreadProfile#getDefault()
      */
     public MidiPlayer(final SoundController controller) {
+        this(controller, ThreadProfile.getDefault());
+    }
+
+    /**
+     * Instantiates a new player.<br>
+     * Using the virtual threads, the play list is waited for and the listener is called on a virtual thread, the files are loaded on a new virtual thread each and the events are dispatched by a dedicated platform thread, so the timing does not depend on the load of the carrier threads.
+     * @param controller the controller
+     * @param profile    the thread profile
+     */
+    public MidiPlayer(final SoundController controller, final ThreadProfile profile) {
         super();
+        threadProfile = profile.isAvailable() ? profile : ThreadProfile.PLATFORM;
         runnable = new MidiPlayerRunnable(this, controller);
-        LOGGER.debug("Creating thread");
-        executor = (ThreadPoolExecutor) Executors.newSingleThreadExecutor();
+        LOGGER.debug("Creating thread using profile: {}", threadProfile);
+
+        if (threadProfile == ThreadProfile.VIRTUAL) {
+            runnable.setLoader(threadProfile.newExecutor(MidiPlayer.class.getSimpleName() + "-loader"));
+            dispatcher = Executors.newSingleThreadExecutor(ThreadProfile.PLATFORM.newThreadFactory(MidiPlayer.class.getSimpleName() + "-dispatcher"));
+            runnable.setDispatcher(dispatcher);
+            executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1, threadProfile.newThreadFactory(MidiPlayer.class.getSimpleName()));
+        } else {
+            dispatcher = null;
+            executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        }
     }
 
     /*
@@ -61,6 +194,18 @@ public class MidiPlayer implements Closeable {
         if (executor != null) {
             executor.shutdownNow();
         }
+
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the batch window of the sequencer engine.
+     * @return the batch window, in microseconds, {@link ReceiverBridge#NO_BATCHING} if disabled
+     */
+    public long getBatchWindow() {
+        return runnable.getEngine().getBatchWindow();
     }
 
     /**
@@ -71,6 +216,22 @@ public class MidiPlayer implements Closeable {
         return runnable.getBpm();
     }
 
+    /**
+     * Gets the cache.
+     * @return the cache or null if disabled
+     */
+    public SequenceCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the histogram of the lateness of the events dispatched by the sequencer engine, in nanoseconds.
+     * @return the jitter
+     */
+    public LatencyHistogram getJitter() {
+        return runnable.getEngine().getJitter();
+    }
+
     /**
      * Gets the listener.
      * @return the listener
@@ -79,17 +240,20 @@ public class MidiPlayer implements Closeable {
         return runnable.getListener();
     }
 
+    /**
+     * Gets the executor used to parse and schedule the files of the play list.
+     * @return the loader
+     */
+    public Executor getLoader() {
+        return runnable.getLoader();
+    }
+
     /**
      * Gets the microsecond position.
      * @return the microsecond position
      */
-    @SuppressWarnings("resource")
     public long getMicrosecondPosition() {
-        if (runnable.getSequencer() != null) {
-            return runnable.getSequencer().getMicrosecondPosition();
-        }
-
-        return 0;
+        return runnable.getEngine().getMicrosecondPosition();
     }
 
     /**
@@ -108,6 +272,14 @@ public class MidiPlayer implements Closeable {
         return runnable.getSoundController();
     }
 
+    /**
+     * Gets the thread profile.
+     * @return the thread profile, {@link ThreadProfile#PLATFORM} if the requested profile is not available
+     */
+    public ThreadProfile getThreadProfile() {
+        return threadProfile;
+    }
+
     /**
      * Checks if is paused.
      * @return true, if is paused
@@ -132,78 +304,67 @@ public class MidiPlayer implements Closeable {
     }
 
     /**
-     * Play.
+     * Add the file to the play list and start the playback if needed.<br>
+     * The file is parsed in the background using the loader, an invalid file is logged and skipped when its turn comes.
      * @param file the file
      * @throws IOException              Signals that an I/O exception has occurred.
      * @throws InvalidMidiDataException the invalid midi data exception
+     * @see #setLoader(Executor)
      */
-    public void play(final Path file) throws IOException, InvalidMidiDataException {
-        LOGGER.info("Reading file: {}", file.toAbsolutePath());
-        Sequence sequence;
-
-        try (InputStream in = Files.newInputStream(file)) {
-            if (in == null) {
-                throw new FileNotFoundException(file.toAbsolutePath().toString());
-            }
-
-            sequence = MidiSystem.getSequence(in);
+    public void play(final Path file) throws IOException, InvalidMidiDataException { // NOSONAR Kept for compatibility
+        if (!Files.isReadable(file)) {
+            throw new NoSuchFileException(file.toString());
         }
 
-        runnable.getPlayList().add(new ImmutablePair<>(file.getFileName().toString(), sequence));
+        final SequenceCache current = cache;
+        final CompletableFuture<Sequence> sequence = CompletableFuture.supplyAsync(() -> {
+            try {
+                // the runnable only reads the sequence, a cached one is not copied
+                return current == null ? SequenceCache.readSequence(file) : current.getSharedSequence(file);
+            } catch (final IOException | InvalidMidiDataException e) {
+                throw new CompletionException(e);
+            }
+        }, runnable.getLoader());
+        // adding a file is an explicit start, a previous stop is cleared
+        runnable.start();
+        runnable.getPlayList().add(new PlayListEntry(file.getFileName().toString(), sequence));
         play();
     }
 
     /**
-     * Read.
+     * Read.<br>
+     * The notes are borrowed from the {@link NotePool}, the caller should return them using {@link NotePool#returnObjects(java.util.Collection)} once processed.
      * @param file the file
      * @return the list
      * @throws IOException              Signals that an I/O exception has occurred.
      * @throws InvalidMidiDataException the invalid midi data exception
+     * @see #readSequence(Path)
      */
-    @SuppressWarnings("resource")
     public List<Note> read(final Path file) throws IOException, InvalidMidiDataException {
-        LOGGER.info("Reading file: {}", file.toAbsolutePath());
-        final List<Note> results = new ArrayList<>();
-        Sequence sequence;
-
-        try (InputStream in = Files.newInputStream(file)) {
-            if (in == null) {
-                throw new FileNotFoundException(file.toAbsolutePath().toString());
-            }
-
-            sequence = MidiSystem.getSequence(in);
-        }
-
-        LOGGER.info("Extracting notes from file: {}", file.toAbsolutePath());
-        final Track[] tracks = sequence.getTracks();
-        byte trackNumber = 0;
-
-        for (final Track track : tracks) {
-            trackNumber++;
-
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Reading track {}/{} having size: {}", String.valueOf(trackNumber), String.valueOf(tracks.length), String.valueOf(track.size()));
-            }
-
-            for (int i = 0; i < track.size(); i++) {
-                final MidiEvent event = track.get(i);
-                final MidiMessage message = event.getMessage();
+        return readSequence(file).toNotes(NotePool.getInstance());
+    }
 
-                if (message instanceof ShortMessage) {
-                    final Note note = NotePool.getInstance().borrowObject((ShortMessage) message);
+    /**
+     * Read the notes of the file into a columnar sequence, tracks are numbered from 1.<br>
+     * The file is decoded by the streaming {@link MidiFileReader}, no intermediate MIDI event is created.<br>
+     * In parallel mode, the tracks are extracted concurrently and the events are merged in tick order, otherwise events are ordered track by track.<br>
+     * When the cache is enabled, the returned sequence is a copy of the cached one.
+     * @param file the file
+     * @return the note sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     * @see #setParallel(boolean)
+     * @see #setCache(SequenceCache)
+     */
+    public NoteSequence readSequence(final Path file) throws IOException, InvalidMidiDataException {
+        final SequenceCache current = cache;
+        final boolean merged = parallel.get();
 
-                    if (note != null) {
-                        LOGGER.debug("Adding note: {}", note);
-                        results.add(note);
-                    }
-                } else {
-                    LOGGER.debug("Not a short message: {}", message);
-                }
-            }
+        if (current == null) {
+            return extract(file, merged);
         }
 
-        LOGGER.info("Completed");
-        return results;
+        return current.getNotes(file, merged, f -> extract(f, merged));
     }
 
     /**
@@ -220,6 +381,15 @@ public class MidiPlayer implements Closeable {
         runnable.resume();
     }
 
+    /**
+     * Sets the batch window of the sequencer engine, the notes of a chord are then delivered together to the controller.
+     * @param batchWindow the batch window, in microseconds, 0 to group the events having the same time, {@link ReceiverBridge#NO_BATCHING} to disable
+     * @see SequencerEngine#setBatchWindow(long)
+     */
+    public void setBatchWindow(final long batchWindow) {
+        runnable.getEngine().setBatchWindow(batchWindow);
+    }
+
     /**
      * Sets the bpm.
      * @param value the bpm to set
@@ -232,6 +402,23 @@ public class MidiPlayer implements Closeable {
         }
     }
 
+    /**
+     * Sets the cache of the parsed files, for example {@link SequenceCache#getInstance()} to share the parsed files between the players.<br>
+     * The played files use the cached sequences without copy, the sequence passed to the listener must not be modified.
+     * @param cache the cache, null to parse the files on each call, the default
+     */
+    public void setCache(final SequenceCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the executor used to parse and schedule the files of the play list.
+     * @param loader the loader, null to use the common fork/join pool
+     */
+    public void setLoader(final Executor loader) {
+        runnable.setLoader(loader);
+    }
+
     /**
      * Sets the listener.
      * @param listener the new listener
@@ -247,6 +434,22 @@ public class MidiPlayer implements Closeable {
         runnable.stop();
     }
 
+    /**
+     * Checks if is parallel.
+     * @return true, if tracks are extracted in parallel
+     */
+    public boolean isParallel() {
+        return parallel.get();
+    }
+
+    /**
+     * Sets the parallel mode used to read the files.
+     * @param parallel true to extract the tracks in parallel and merge the events in tick order
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel.set(parallel);
+    }
+
     /**
      * Play.
      */
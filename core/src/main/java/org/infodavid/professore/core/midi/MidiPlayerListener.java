@@ -7,6 +7,15 @@ import javax.sound.midi.Sequence;
  */
 public interface MidiPlayerListener {
 
+    /**
+     * Completed, called when the last end of track of the sequence is reached, before the next entry of the play list is played.
+     * @param player the player
+     * @param title  the title
+     */
+    default void completed(final MidiPlayer player, final String title) {
+        // nothing by default
+    }
+
     /**
      * Paused.
      * @param player the player
@@ -17,7 +26,7 @@ public interface MidiPlayerListener {
      * Playing.
      * @param player the player
      * @param title the title
-     * @param sequence the sequence
+     * @param sequence the sequence, shared with the cache of the player when enabled, it must not be modified
      */
     void playing(MidiPlayer player, String title, Sequence sequence);
 
@@ -3,22 +3,24 @@ package org.infodavid.professore.core.midi;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.Sequencer;
+import javax.sound.midi.Receiver;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class MidiPlayerRunnable.
+ * The Class MidiPlayerRunnable.<br>
+ * Plays the entries of the play list using a {@link SequencerEngine}, the events are dispatched on the thread of the runnable or by the dispatcher if defined.
  */
 class MidiPlayerRunnable implements Runnable {
 
@@ -28,6 +30,9 @@ class MidiPlayerRunnable implements Runnable {
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(MidiPlayerRunnable.class);
 
+    /** The Constant MAX_CHAIN_DELAY, in nanoseconds, the next entry starts at the end of the previous one if it is ready before this delay. */
+    private static final long MAX_CHAIN_DELAY = TimeUnit.MILLISECONDS.toNanos(50);
+
     /** The bpm. */
     private short bpm = 80;
 
@@ -35,11 +40,20 @@ class MidiPlayerRunnable implements Runnable {
     private final AtomicBoolean connectDevice = new AtomicBoolean(true);
 
     /** The current. */
-    private Pair<String, Sequence> current;
+    private PlayListEntry current;
+
+    /** The dispatcher, platform thread dispatching the events, null to dispatch them on the thread of the runnable. */
+    private volatile Executor dispatcher;
+
+    /** The engine. */
+    private final SequencerEngine engine;
 
     /** The listener. */
     private MidiPlayerListener listener;
 
+    /** The executor used to parse and schedule the entries of the play list. */
+    private volatile Executor loader = ForkJoinPool.commonPool();
+
     /** The paused. */
     private final AtomicBoolean paused = new AtomicBoolean(false);
 
@@ -47,10 +61,7 @@ class MidiPlayerRunnable implements Runnable {
     private final MidiPlayer player;
 
     /** The play list. */
-    private final BlockingQueue<Pair<String, Sequence>> playList = new LinkedBlockingQueue<>(Byte.MAX_VALUE);
-
-    /** The sequencer. */
-    private Sequencer sequencer;
+    private final BlockingQueue<PlayListEntry> playList = new LinkedBlockingQueue<>(Byte.MAX_VALUE);
 
     /** The sound controller. */
     private final SoundController soundController;
@@ -64,6 +75,7 @@ class MidiPlayerRunnable implements Runnable {
         super();
         this.player = player;
         soundController = controller;
+        engine = new SequencerEngine(controller);
     }
 
     /**
@@ -74,6 +86,14 @@ class MidiPlayerRunnable implements Runnable {
         return bpm;
     }
 
+    /**
+     * Gets the engine.
+     * @return the engine
+     */
+    public SequencerEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Gets the listener.
      * @return the listener
@@ -83,19 +103,19 @@ class MidiPlayerRunnable implements Runnable {
     }
 
     /**
-     * Gets the play list.
-     * @return the play list
+     * Gets the executor used to parse and schedule the entries of the play list.
+     * @return the loader
      */
-    public BlockingQueue<Pair<String, Sequence>> getPlayList() {
-        return playList;
+    public Executor getLoader() {
+        return loader;
     }
 
     /**
-     * Gets the sequencer.
-     * @return the sequencer
+     * Gets the play list.
+     * @return the play list
      */
-    public Sequencer getSequencer() {
-        return sequencer;
+    public BlockingQueue<PlayListEntry> getPlayList() {
+        return playList;
     }
 
     /**
@@ -127,9 +147,7 @@ class MidiPlayerRunnable implements Runnable {
      * @return true, if is playing
      */
     public boolean isPlaying() {
-        synchronized (this) {
-            return sequencer != null && sequencer.isRunning();
-        }
+        return engine.isRunning() && !engine.isPaused();
     }
 
     /**
@@ -138,10 +156,7 @@ class MidiPlayerRunnable implements Runnable {
     public void pause() {
         synchronized (this) {
             paused.set(true);
-
-            if (sequencer != null && sequencer.isOpen()) {
-                sequencer.stop();
-            }
+            engine.pause();
         }
 
         if (listener != null) {
@@ -157,10 +172,7 @@ class MidiPlayerRunnable implements Runnable {
             pause();
 
             if (current != null) {
-                final List<Pair<String, Sequence>> entries = new ArrayList<>(playList);
-                entries.add(0, current);
-                playList.clear();
-                playList.addAll(entries);
+                requeue(current);
             }
         }
     }
@@ -170,10 +182,7 @@ class MidiPlayerRunnable implements Runnable {
      */
     public void resume() {
         synchronized (this) {
-            if (sequencer != null && sequencer.isOpen()) {
-                sequencer.start();
-            }
-
+            engine.resume();
             paused.set(false);
         }
 
@@ -186,82 +195,92 @@ class MidiPlayerRunnable implements Runnable {
      * (non-javadoc)
      * @see java.lang.Runnable#run()
      */
-    @SuppressWarnings("resource")
     @Override
     public void run() {
-        try { // NOSONAR sequencer is used in the object and close is handled in the finally block
-            if (sequencer == null) {
-                sequencer = MidiSystem.getSequencer(connectDevice.get());
-
-                if (sequencer == null) {
-                    throw new MidiUnavailableException("Sequencer device not supported");
+        Receiver device = null;
+
+        try {
+            if (connectDevice.get()) {
+                try {
+                    device = MidiSystem.getReceiver();
+                } catch (final MidiUnavailableException e) {
+                    LOGGER.warn("Cannot connect the device, events are only sent to the controller", e);
                 }
-
-                sequencer.getTransmitter().setReceiver(new ReceiverBridge(soundController, sequencer.getTransmitter().getReceiver()));
-                sequencer.addMetaEventListener(soundController::meta);
-                final int[] controllerTypes = new int[128];
-
-                for (int i = 0; i < controllerTypes.length; i++) {
-                    controllerTypes[i] = i;
-                }
-
-                sequencer.addControllerEventListener(soundController::controlChange, controllerTypes);
             }
 
-            if (!sequencer.isOpen()) {
-                sequencer.open();
-            }
+            engine.setDevice(device);
+            // end of the previous entry, -1 if stopped or not chained
+            long end = -1;
 
-            while (sequencer.isOpen()) { // NOSONAR break and continue
+            while (!Thread.currentThread().isInterrupted() && !engine.isStopped()) { // NOSONAR break and continue
                 synchronized (this) {
                     current = playList.poll(1000, TimeUnit.MILLISECONDS);
                 }
 
                 if (current == null) {
+                    end = -1;
+
+                    continue;
+                }
+
+                if (current.getSequence() == null) {
+                    break;
+                }
+
+                final SequencerEngine.Schedule schedule;
+
+                try {
+                    schedule = current.prepare(bpm, loader).get();
+                } catch (final ExecutionException e) {
+                    LOGGER.error("Cannot play: {}", current.getTitle(), e.getCause());
+                    end = -1;
+
                     continue;
                 }
 
-                if (current.getValue() == null) {
+                // stopped while the entry was prepared, it is played when the player is started again
+                if (engine.isStopped()) {
+                    synchronized (this) {
+                        requeue(current);
+                    }
+
                     break;
                 }
 
-                LOGGER.info("Playing: {}", current.getKey());
+                LOGGER.info("Playing: {}", current.getTitle());
 
                 if (listener != null) {
-                    listener.playing(player, current.getKey(), current.getValue());
+                    listener.playing(player, current.getTitle(), current.getSequence().join());
                 }
 
-                sequencer.setSequence(current.getValue());
-                sequencer.setTempoInBPM(bpm);
-                sequencer.start();
+                // the next entry is parsed and scheduled while the current one plays
+                final PlayListEntry next = playList.peek();
 
-                while (sequencer.isRunning() || paused.get()) {
-                    Thread.sleep(500);
+                if (next != null && next.getSequence() != null) {
+                    next.prepare(bpm, loader);
                 }
 
-                sequencer.stop();
+                final long now = System.nanoTime();
+                // returns at the end of track or when stopped
+                end = dispatch(schedule, end >= 0 && now - end < MAX_CHAIN_DELAY ? end : now);
+
+                if (end >= 0 && listener != null) {
+                    listener.completed(player, current.getTitle());
+                }
 
                 if (playList.isEmpty()) {
                     break;
                 }
             }
-        } catch (final MidiUnavailableException e) {
-            LOGGER.error("Cannot open sequencer", e);
-        } catch (final InvalidMidiDataException e) {
-            LOGGER.error("Cannot play sequence", e);
         } catch (@SuppressWarnings("unused") final InterruptedException e) {
             LOGGER.warn("Thread interruped");
-
-            if (sequencer != null) {
-                sequencer.close();
-            }
-
             Thread.currentThread().interrupt();
         } finally {
             paused.set(false);
+            engine.setDevice(null);
 
-            if (sequencer != null && sequencer.isOpen()) {
-                sequencer.close();
+            if (device != null) {
+                device.close();
             }
 
             if (listener != null) {
@@ -286,6 +305,22 @@ class MidiPlayerRunnable implements Runnable {
         this.connectDevice.set(connectDevice);
     }
 
+    /**
+     * Sets the executor used to parse and schedule the entries of the play list.
+     * @param loader the loader, null to use the common fork/join pool
+     */
+    public void setLoader(final Executor loader) {
+        this.loader = loader == null ? ForkJoinPool.commonPool() : loader;
+    }
+
+    /**
+     * Sets the dispatcher, a platform thread dispatching the events while the runnable waits on a virtual thread.
+     * @param dispatcher the dispatcher, null to dispatch the events on the thread of the runnable
+     */
+    public void setDispatcher(final Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     /**
      * Sets the listener.
      * @param listener the new listener
@@ -295,19 +330,67 @@ class MidiPlayerRunnable implements Runnable {
     }
 
     /**
-     * Stop.
+     * Start, clearing a previous stop so the entries of the play list are played.
+     */
+    public void start() {
+        engine.start();
+    }
+
+    /**
+     * Stop, the entries remaining in the play list are kept until the next start.
      */
     public void stop() {
         synchronized (this) {
             paused.set(false);
-
-            if (sequencer != null && sequencer.isOpen()) {
-                sequencer.stop();
-            }
+            engine.stop();
         }
 
         if (listener != null) {
             listener.stopped(player);
         }
     }
+
+    /**
+     * Play the schedule using the engine, on the dispatcher if defined.
+     * @param schedule the schedule
+     * @param start    the time of the start, from {@link System#nanoTime()}
+     * @return the time of the end of the schedule, from {@link System#nanoTime()}, or -1 if stopped
+     * @throws InterruptedException the interrupted exception
+     */
+    private long dispatch(final SequencerEngine.Schedule schedule, final long start) throws InterruptedException {
+        final Executor target = dispatcher;
+
+        if (target == null) {
+            return engine.play(schedule, start);
+        }
+
+        final FutureTask<Long> task = new FutureTask<>(() -> Long.valueOf(engine.play(schedule, start)));
+        target.execute(task);
+
+        try {
+            return task.get().longValue();
+        } catch (final InterruptedException e) {
+            // the dispatch ends with the runnable
+            task.cancel(true);
+
+            throw e;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw (InterruptedException) new InterruptedException("Dispatch interrupted").initCause(e.getCause());
+        }
+    }
+
+    /**
+     * Put the entry back at the head of the play list.
+     * @param entry the entry
+     */
+    private void requeue(final PlayListEntry entry) {
+        final List<PlayListEntry> entries = new ArrayList<>(playList);
+        entries.add(0, entry);
+        playList.clear();
+        playList.addAll(entries);
+    }
 }
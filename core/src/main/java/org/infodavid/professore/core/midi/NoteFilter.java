@@ -1,9 +1,12 @@
 package org.infodavid.professore.core.midi;
 
 import org.infodavid.professore.core.Note;
+import org.infodavid.professore.core.NoteEvent;
+import org.infodavid.professore.core.NotePool;
 
 /**
- * The Interface NoteFilter.
+ * The Interface NoteFilter.<br>
+ * The filter is only applied to the note events, the other messages such as the all notes off control changes are always delivered.
  */
 public interface NoteFilter {
 
@@ -13,4 +16,20 @@ public interface NoteFilter {
      * @return true, if successful
      */
     boolean accept(Note note);
+
+    /**
+     * Accept.<br>
+     * The default implementation borrows a note from the {@link NotePool} and calls {@link #accept(Note)}, implementations overriding this method avoid the pool.
+     * @param event the event packed using {@link NoteEvent}
+     * @return true, if successful
+     */
+    default boolean accept(final long event) {
+        if (!NoteEvent.isNote(event)) {
+            return false;
+        }
+
+        try (Note note = NotePool.getInstance().borrowObject(event)) {
+            return accept(note);
+        }
+    }
 }
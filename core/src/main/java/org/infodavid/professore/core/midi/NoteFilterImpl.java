@@ -3,6 +3,7 @@ package org.infodavid.professore.core.midi;
 import java.io.Serializable;
 
 import org.infodavid.professore.core.Note;
+import org.infodavid.professore.core.NoteEvent;
 
 /**
  * The Class NoteFilterImpl.
@@ -35,6 +36,23 @@ public class NoteFilterImpl implements Serializable, NoteFilter {
         return note.getKey() >= key;
     }
 
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.midi.NoteFilter#accept(long)
+     */
+    @Override
+    public boolean accept(final long event) {
+        if (!NoteEvent.isNote(event)) {
+            return false;
+        }
+
+        if (acute) {
+            return NoteEvent.getKey(event) <= key;
+        }
+
+        return NoteEvent.getKey(event) >= key;
+    }
+
     /**
      * Gets the key.
      * @return the key
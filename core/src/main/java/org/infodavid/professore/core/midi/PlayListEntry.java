@@ -0,0 +1,67 @@
+package org.infodavid.professore.core.midi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.sound.midi.Sequence;
+
+/**
+ * The Class PlayListEntry.<br>
+ * Entry of the play list of a {@link MidiPlayer}, the sequence is parsed and scheduled in the background so the entry is ready when the previous one ends.
+ */
+final class PlayListEntry {
+
+    /** The bpm of the prepared schedule. */
+    private short bpm;
+
+    /** The schedule, null if not prepared. */
+    private CompletableFuture<SequencerEngine.Schedule> schedule;
+
+    /** The sequence, null for the entry ending the play list. */
+    private final CompletableFuture<Sequence> sequence;
+
+    /** The title. */
+    private final String title;
+
+    /**
+     * Instantiates a new entry.
+     * @param title    the title
+     * @param sequence the sequence being parsed, null to end the play list
+     */
+    PlayListEntry(final String title, final CompletableFuture<Sequence> sequence) {
+        super();
+        this.title = title;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Gets the sequence.
+     * @return the sequence being parsed or null for the entry ending the play list
+     */
+    CompletableFuture<Sequence> getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the title.
+     * @return the title
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * Prepare the schedule of the sequence once parsed, the schedule is prepared again if the bpm changed.
+     * @param value    the bpm
+     * @param executor the executor
+     * @return the schedule
+     */
+    synchronized CompletableFuture<SequencerEngine.Schedule> prepare(final short value, final Executor executor) {
+        if (schedule == null || bpm != value) {
+            bpm = value;
+            schedule = sequence.thenApplyAsync(s -> SequencerEngine.schedule(s, value), executor);
+        }
+
+        return schedule;
+    }
+}
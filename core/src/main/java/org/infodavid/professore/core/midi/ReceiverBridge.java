@@ -1,20 +1,91 @@
 package org.infodavid.professore.core.midi;
 
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.sound.midi.MidiMessage;
 import javax.sound.midi.Receiver;
 import javax.sound.midi.ShortMessage;
 
 /**
- * The Class ReceiverBridge.
+ * The Class ReceiverBridge.<br>
+ * When batching is enabled, the short messages received in the same window are delivered together using {@link SoundController#controlChange(ShortMessage[], int)}.<br>
+ * The batch is delivered when a message is received outside of the window of the first message of the batch, using {@link #flush()} or when closing the bridge.<br>
+ * As a fallback, a batch still pending when its window expires (at least {@link #MINIMUM_EXPIRY}) is delivered by a shared background thread, each bridge uses one expiry task at most.<br>
+ * The calls to the controller are serialized by the bridge and made without holding the lock used by the senders.<br>
+ * The messages are referenced until the batch is delivered and must not be modified by the sender in the meantime.
  */
 public class ReceiverBridge implements Receiver {
 
+    /**
+     * The Class Flusher, holder of the thread delivering the batches when their window expires, created on first use.
+     */
+    private static final class Flusher {
+
+        /** The Constant EXECUTOR. */
+        private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+        static {
+            EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread result = new Thread(runnable, ReceiverBridge.class.getSimpleName() + "-flusher");
+                result.setDaemon(true);
+                result.setPriority(Thread.MAX_PRIORITY);
+
+                return result;
+            });
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+
+        /**
+         * Instantiates a new flusher.
+         */
+        private Flusher() {
+            super();
+        }
+    }
+
+    /** The Constant MINIMUM_EXPIRY, in microseconds, so the messages of a chord sent by separate calls are grouped even without window. */
+    public static final long MINIMUM_EXPIRY = 1000;
+
+    /** The Constant NO_BATCHING. */
+    public static final long NO_BATCHING = -1;
+
+    /** The batch. */
+    private ShortMessage[] batch = new ShortMessage[16];
+
+    /** The number of messages in the batch. */
+    private int batchSize = 0;
+
+    /** The time of the first message of the batch, from {@link System#nanoTime()}. */
+    private long batchStart;
+
+    /** The time stamp of the first message of the batch, in microseconds. */
+    private long batchTimeStamp;
+
+    /** The batch window, in microseconds. */
+    private long batchWindow = NO_BATCHING;
+
     /** The controller. */
     private final SoundController controller;
 
     /** The delegate. */
     private final Receiver delegate;
 
+    /** The delivery lock, serializing the calls to the controller, acquired before the lock of the bridge. */
+    private final ReentrantLock delivery = new ReentrantLock();
+
+    /** The expiry task, null if none is scheduled, rescheduled while a batch is pending instead of one task per batch. */
+    private ScheduledFuture<?> expiry;
+
+    /** The expiring, true if the batches are delivered when their window expires, false if the sender calls {@link #flush()}. */
+    private boolean expiring = true;
+
+    /** The spare batch, swapped with the batch when it is delivered, null while delivering. */
+    private ShortMessage[] spare = new ShortMessage[16];
+
     /**
      * Instantiates a new delegate bridge.
      * @param controller the controller
@@ -32,6 +103,15 @@ public class ReceiverBridge implements Receiver {
      */
     @Override
     public void close() {
+        flush();
+
+        synchronized (this) {
+            if (expiry != null) {
+                expiry.cancel(false);
+                expiry = null;
+            }
+        }
+
         if (delegate == null) {
             return;
         }
@@ -39,18 +119,219 @@ public class ReceiverBridge implements Receiver {
         delegate.close();
     }
 
+    /**
+     * Deliver the pending batch to the controller.
+     */
+    public void flush() {
+        delivery.lock();
+
+        try {
+            final ShortMessage[] messages;
+            final int size;
+
+            synchronized (this) {
+                messages = batch;
+                size = batchSize;
+
+                if (size == 0) {
+                    return;
+                }
+
+                swap();
+            }
+
+            deliver(messages, size);
+        } finally {
+            delivery.unlock();
+        }
+    }
+
+    /**
+     * Gets the batch window.
+     * @return the batch window, in microseconds, {@link #NO_BATCHING} if disabled
+     */
+    public synchronized long getBatchWindow() {
+        return batchWindow;
+    }
+
     /*
      * (non-javadoc)
      * @see javax.sound.midi.Receiver#send(javax.sound.midi.MidiMessage, long)
      */
     @Override
     public void send(final MidiMessage message, final long timeStamp) {
-        if (delegate != null) {
-            // delegate.send(message, timeStamp);
+        if (!(message instanceof ShortMessage)) {
+            return;
+        }
+
+        final ShortMessage shortMessage = (ShortMessage) message;
+
+        synchronized (this) {
+            if (batchWindow >= 0 && timeStamp >= 0 && (batchSize == 0 || timeStamp - batchTimeStamp <= batchWindow)) {
+                append(shortMessage, timeStamp);
+
+                return;
+            }
+        }
+
+        delivery.lock();
+
+        try {
+            final ShortMessage[] messages;
+            final int size;
+            final boolean batching;
+
+            synchronized (this) {
+                messages = batch;
+                size = batchSize;
+
+                if (size > 0) {
+                    swap();
+                }
+
+                batching = batchWindow >= 0 && timeStamp >= 0;
+
+                // the message starts the next batch
+                if (batching) {
+                    append(shortMessage, timeStamp);
+                }
+            }
+
+            if (size > 0) {
+                deliver(messages, size);
+            }
+
+            // messages without time stamp are delivered immediately, after the pending ones
+            if (!batching) {
+                controller.controlChange(shortMessage);
+            }
+        } finally {
+            delivery.unlock();
         }
+    }
+
+    /**
+     * Sets the batch window, the pending batch is delivered first.<br>
+     * Each batch is delivered at the latest when its window expires, so the last messages of a live input are not held until the next one.
+     * @param batchWindow the batch window, in microseconds, 0 to group the messages having the same time stamp, {@link #NO_BATCHING} to disable
+     */
+    public void setBatchWindow(final long batchWindow) {
+        setBatchWindow(batchWindow, true);
+    }
+
+    /**
+     * Sets the batch window, the pending batch is delivered first.
+     * @param batchWindow the batch window, in microseconds, 0 to group the messages having the same time stamp, {@link #NO_BATCHING} to disable
+     * @param expiring    true to deliver each batch when its window expires, false if the sender delivers the batches using {@link #flush()} before waiting
+     */
+    void setBatchWindow(final long batchWindow, final boolean expiring) {
+        flush();
+
+        synchronized (this) {
+            this.batchWindow = batchWindow < 0 ? NO_BATCHING : batchWindow;
+            this.expiring = expiring;
+        }
+    }
+
+    /**
+     * Append the message to the batch, the lock of the bridge must be held.
+     * @param message   the message
+     * @param timeStamp the time stamp, in microseconds
+     */
+    private void append(final ShortMessage message, final long timeStamp) {
+        if (batchSize == 0) {
+            batchTimeStamp = timeStamp;
+            batchStart = System.nanoTime();
+
+            if (expiring && expiry == null) {
+                expiry = Flusher.EXECUTOR.schedule(this::expire, getExpiry(), TimeUnit.MICROSECONDS);
+            }
+        } else if (batchSize == batch.length) {
+            batch = Arrays.copyOf(batch, batchSize * 2);
+        }
+
+        batch[batchSize++] = message;
+    }
+
+    /**
+     * Deliver the messages to the controller, the delivery lock must be held and the lock of the bridge must not be held.
+     * @param messages the messages
+     * @param size     the number of messages
+     */
+    private void deliver(final ShortMessage[] messages, final int size) {
+        try {
+            if (size == 1) {
+                controller.controlChange(messages[0]);
+            } else {
+                controller.controlChange(messages, size);
+            }
+        } finally {
+            Arrays.fill(messages, 0, size, null);
 
-        if (message instanceof ShortMessage) {
-            controller.controlChange((ShortMessage) message);
+            synchronized (this) {
+                spare = messages;
+            }
         }
     }
+
+    /**
+     * Deliver the pending batch if its window has expired, otherwise the task is rescheduled at the expiration of the pending batch.
+     */
+    private void expire() {
+        // a sender is delivering, the pending batch is checked again later instead of blocking the shared thread
+        if (!delivery.tryLock()) {
+            synchronized (this) {
+                expiry = Flusher.EXECUTOR.schedule(this::expire, MINIMUM_EXPIRY, TimeUnit.MICROSECONDS);
+            }
+
+            return;
+        }
+
+        try {
+            final ShortMessage[] messages;
+            final int size;
+
+            synchronized (this) {
+                expiry = null;
+                messages = batch;
+                size = batchSize;
+
+                if (size == 0) {
+                    return;
+                }
+
+                final long remaining = TimeUnit.MICROSECONDS.toNanos(getExpiry()) - (System.nanoTime() - batchStart);
+
+                if (remaining > 0) {
+                    expiry = Flusher.EXECUTOR.schedule(this::expire, remaining, TimeUnit.NANOSECONDS);
+
+                    return;
+                }
+
+                swap();
+            }
+
+            deliver(messages, size);
+        } finally {
+            delivery.unlock();
+        }
+    }
+
+    /**
+     * Gets the delay after which a pending batch is delivered by the shared thread.
+     * @return the delay, in microseconds
+     */
+    private long getExpiry() {
+        return Math.max(batchWindow, MINIMUM_EXPIRY);
+    }
+
+    /**
+     * Swap the batch with the spare one, the lock of the bridge and the delivery lock must be held.
+     */
+    private void swap() {
+        // no spare when the controller sends to the bridge while a batch is delivered
+        batch = spare == null ? new ShortMessage[batch.length] : spare;
+        batchSize = 0;
+        spare = null;
+    }
 }
@@ -0,0 +1,309 @@
+package org.infodavid.professore.core.midi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+
+import org.infodavid.professore.core.CacheStatistics;
+import org.infodavid.professore.core.NoteSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * The Class SequenceCache.<br>
+ * Cache of the parsed sequences and extracted notes of MIDI files, keyed by path and last modification time so a modified file is parsed again.<br>
+ * Entries are weighted by their estimated size in memory, the cached values are never returned, callers get copies they can modify.<br>
+ * The cache is optional, see {@link MidiPlayer#setCache(SequenceCache)}.
+ */
+public final class SequenceCache {
+
+    /**
+     * The Class Key.
+     */
+    private static final class Key {
+
+        /** The kind of value, see {@link SequenceCache#SEQUENCE}, {@link SequenceCache#NOTES} and {@link SequenceCache#MERGED_NOTES}. */
+        private final int kind;
+
+        /** The last modified time. */
+        private final long lastModified;
+
+        /** The path. */
+        private final Path path;
+
+        /**
+         * Instantiates a new key.
+         * @param path         the path
+         * @param lastModified the last modified time
+         * @param kind         the kind of value
+         */
+        Key(final Path path, final long lastModified, final int kind) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.kind = kind;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+
+            return lastModified == other.lastModified && kind == other.kind && path.equals(other.path);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = path.hashCode();
+            result = prime * result + Long.hashCode(lastModified);
+
+            return prime * result + kind;
+        }
+    }
+
+    /**
+     * The Interface Loader.
+     * @param <T> the type of the loaded value
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        /**
+         * Load the file.
+         * @param file the file
+         * @return the value
+         * @throws IOException              Signals that an I/O exception has occurred.
+         * @throws InvalidMidiDataException the invalid midi data exception
+         */
+        T load(Path file) throws IOException, InvalidMidiDataException;
+    }
+
+    /** The Constant DEFAULT_MAXIMUM_SIZE, in bytes. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 32L * 1024 * 1024;
+
+    /** The Constant EVENT_SIZE, estimated size in bytes of an event of a javax sequence: the event, the message, its data and the references held by the track. */
+    private static final int EVENT_SIZE = 128;
+
+    /** The Constant INSTANCE. */
+    private static final SequenceCache INSTANCE = new SequenceCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequenceCache.class);
+
+    /** The Constant MERGED_NOTES, kind of the note sequences ordered by tick. */
+    private static final int MERGED_NOTES = 2;
+
+    /** The Constant NOTE_SIZE, size in bytes of an event of a note sequence. */
+    private static final int NOTE_SIZE = 13;
+
+    /** The Constant NOTES, kind of the note sequences ordered track by track. */
+    private static final int NOTES = 1;
+
+    /** The Constant SEQUENCE, kind of the javax sequences. */
+    private static final int SEQUENCE = 0;
+
+    /**
+     * Copy the sequence, the events and the messages are copied so the copy can be modified.
+     * @param source the source
+     * @return the copy
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static Sequence copy(final Sequence source) throws InvalidMidiDataException {
+        final Sequence result = new Sequence(source.getDivisionType(), source.getResolution());
+
+        for (final Track track : source.getTracks()) {
+            final Track target = result.createTrack();
+
+            for (int i = 0; i < track.size(); i++) {
+                final MidiEvent event = track.get(i);
+                target.add(new MidiEvent((MidiMessage) event.getMessage().clone(), event.getTick()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the shared instance, not used unless set on the players.
+     * @return the instance
+     */
+    public static SequenceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Read the sequence using the javax parser.
+     * @param file the file
+     * @return the sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public static Sequence readSequence(final Path file) throws IOException, InvalidMidiDataException {
+        LOGGER.info("Reading file: {}", file.toAbsolutePath());
+
+        try (InputStream in = Files.newInputStream(file)) {
+            if (in == null) {
+                throw new FileNotFoundException(file.toAbsolutePath().toString());
+            }
+
+            return MidiSystem.getSequence(in);
+        }
+    }
+
+    /**
+     * Weigh the value by its estimated size in memory.
+     * @param key   the key
+     * @param value the value
+     * @return the weight, in bytes
+     */
+    private static int weigh(final Key key, final Object value) {
+        if (value instanceof NoteSequence) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) Math.max(1, ((NoteSequence) value).size()) * NOTE_SIZE);
+        }
+
+        long result = 0;
+
+        for (final Track track : ((Sequence) value).getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                result += EVENT_SIZE + track.get(i).getMessage().getLength();
+            }
+        }
+
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, result));
+    }
+
+    /** The cache. */
+    private final Cache<Key, Object> cache;
+
+    /**
+     * Instantiates a new sequence cache.
+     * @param maximumSize the maximum estimated size of the cached values, in bytes
+     */
+    public SequenceCache(final long maximumSize) {
+        super();
+        cache = Caffeine.newBuilder().maximumWeight(maximumSize).weigher(SequenceCache::weigh).recordStats().build();
+    }
+
+    /**
+     * Gets the estimated number of entries.
+     * @return the number of entries
+     */
+    public long getEstimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Gets the notes of the file, loaded using the given loader if not cached.
+     * @param file   the file
+     * @param merged true if the events of the tracks are merged in tick order, false if ordered track by track
+     * @param loader the loader
+     * @return a copy of the note sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public NoteSequence getNotes(final Path file, final boolean merged, final Loader<NoteSequence> loader) throws IOException, InvalidMidiDataException {
+        return new NoteSequence((NoteSequence) get(file, merged ? MERGED_NOTES : NOTES, loader));
+    }
+
+    /**
+     * Gets the sequence of the file, parsed using the javax parser if not cached.
+     * @param file the file
+     * @return a copy of the sequence
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    public Sequence getSequence(final Path file) throws IOException, InvalidMidiDataException {
+        return copy(getSharedSequence(file));
+    }
+
+    /**
+     * Gets the cached sequence of the file, used by the players and the schedulers which only read it.
+     * @param file the file
+     * @return the sequence, shared and not modifiable
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    Sequence getSharedSequence(final Path file) throws IOException, InvalidMidiDataException {
+        return (Sequence) get(file, SEQUENCE, SequenceCache::readSequence);
+    }
+
+    /**
+     * Gets the statistics (hits, misses, loads and evictions).
+     * @return the statistics
+     */
+    public CacheStatistics getStats() {
+        final CacheStats stats = cache.stats();
+
+        return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(), stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount(), stats.evictionWeight());
+    }
+
+    /**
+     * Invalidate all the entries.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Gets the value.
+     * @param file   the file
+     * @param kind   the kind of value
+     * @param loader the loader
+     * @return the value
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private Object get(final Path file, final int kind, final Loader<?> loader) throws IOException, InvalidMidiDataException {
+        final Path path = file.toAbsolutePath().normalize();
+        final Key key = new Key(path, Files.getLastModifiedTime(path).toMillis(), kind);
+
+        try {
+            return cache.get(key, k -> {
+                try {
+                    return loader.load(path);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (final InvalidMidiDataException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } catch (final IllegalArgumentException e) {
+            if (e.getCause() instanceof InvalidMidiDataException) {
+                throw (InvalidMidiDataException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package org.infodavid.professore.core.midi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.infodavid.professore.core.audio.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class SequencerEngine.<br>
+ * Sequencer dispatching the events of a sequence to a {@link SoundController} at their time, on the thread calling {@link #play(Sequence, short)}.<br>
+ * The events of all the tracks are sorted and converted to nanoseconds using the tempo map before playing, the engine then parks until shortly before each event and spins until its exact time.<br>
+ * The lateness of each event (the jitter) is recorded, see {@link #getJitter()}.
+ */
+public final class SequencerEngine {
+
+    /**
+     * The Class Schedule.<br>
+     * Events of a sequence merged in time order with their times in nanoseconds, prepared by {@link SequencerEngine#schedule(Sequence, short)} before playing.
+     */
+    public static final class Schedule {
+
+        /** The bpm used until the first tempo change. */
+        private final short bpm;
+
+        /** The duration, time of the last end of track, in nanoseconds. */
+        private final long duration;
+
+        /** The messages. */
+        private final MidiMessage[] messages;
+
+        /** The times, in nanoseconds. */
+        private final long[] times;
+
+        /**
+         * Instantiates a new schedule.
+         * @param bpm      the bpm
+         * @param messages the messages
+         * @param times    the times
+         * @param duration the duration
+         */
+        private Schedule(final short bpm, final MidiMessage[] messages, final long[] times, final long duration) {
+            this.bpm = bpm;
+            this.messages = messages;
+            this.times = times;
+            this.duration = duration;
+        }
+
+        /**
+         * Gets the bpm used until the first tempo change.
+         * @return the bpm
+         */
+        public short getBpm() {
+            return bpm;
+        }
+
+        /**
+         * Gets the duration.
+         * @return the duration, in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Gets the message of the event.
+         * @param index the index of the event
+         * @return the message
+         */
+        MidiMessage getMessage(final int index) {
+            return messages[index];
+        }
+
+        /**
+         * Gets the time of the event.
+         * @param index the index of the event
+         * @return the time, in nanoseconds
+         */
+        long getTime(final int index) {
+            return times[index];
+        }
+
+        /**
+         * Size.
+         * @return the number of events
+         */
+        public int size() {
+            return times.length;
+        }
+    }
+
+    /** The Constant ALL_NOTES_OFF, control sent to all the channels when the playback is paused or stopped. */
+    private static final int ALL_NOTES_OFF = 123;
+
+    /** The Constant CHANNELS. */
+    private static final int CHANNELS = 16;
+
+    /** The Constant END_OF_TRACK. */
+    private static final int END_OF_TRACK = 0x2F;
+
+    /** The Constant DEFAULT_SPIN_THRESHOLD, in nanoseconds. */
+    public static final long DEFAULT_SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(500);
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequencerEngine.class);
+
+    /** The Constant SET_TEMPO. */
+    private static final int SET_TEMPO = 0x51;
+
+    /**
+     * Count the events of the sequence.
+     * @param sequence the sequence
+     * @return the count
+     */
+    private static int countEvents(final Sequence sequence) {
+        int result = 0;
+
+        for (final Track track : sequence.getTracks()) {
+            result += track.size();
+        }
+
+        return result;
+    }
+
+    /**
+     * Merge the events of the tracks in tick order and convert their ticks to nanoseconds using the tempo map, the schedule can be prepared on any thread.
+     * @param sequence the sequence
+     * @param bpm      the tempo used until the first tempo change
+     * @return the schedule
+     */
+    public static Schedule schedule(final Sequence sequence, final short bpm) {
+        final Track[] tracks = sequence.getTracks();
+        final int[] heads = new int[tracks.length];
+        final MidiMessage[] messages = new MidiMessage[countEvents(sequence)];
+        final long[] results = new long[messages.length];
+        long endOfTrack = -1;
+        final boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+        final double smpteNanosecondsPerTick = ppq ? 0 : 1_000_000_000d / (sequence.getDivisionType() * sequence.getResolution());
+        // current tempo segment, in microseconds per quarter note
+        double tempo = 60_000_000d / Math.max(1, bpm);
+        long segmentTick = 0;
+        double segmentNanoseconds = 0;
+
+        for (int i = 0; i < messages.length; i++) {
+            // the tracks are sorted, the next event is the earliest head, the first track wins on equal ticks
+            int selected = -1;
+
+            for (int t = 0; t < tracks.length; t++) {
+                if (heads[t] < tracks[t].size() && (selected < 0 || tracks[t].get(heads[t]).getTick() < tracks[selected].get(heads[selected]).getTick())) {
+                    selected = t;
+                }
+            }
+
+            final MidiEvent event = tracks[selected].get(heads[selected]++);
+            final long tick = event.getTick();
+            messages[i] = event.getMessage();
+
+            if (ppq) {
+                final double nanoseconds = segmentNanoseconds + (tick - segmentTick) * tempo * 1000d / sequence.getResolution();
+                results[i] = Math.round(nanoseconds);
+
+                if (messages[i] instanceof MetaMessage && ((MetaMessage) messages[i]).getType() == SET_TEMPO) {
+                    final byte[] data = ((MetaMessage) messages[i]).getData();
+
+                    if (data.length >= 3) {
+                        segmentNanoseconds = nanoseconds;
+                        segmentTick = tick;
+                        tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+                    }
+                }
+            } else {
+                results[i] = Math.round(tick * smpteNanosecondsPerTick);
+            }
+
+            if (messages[i] instanceof MetaMessage && ((MetaMessage) messages[i]).getType() == END_OF_TRACK) {
+                endOfTrack = results[i];
+            }
+        }
+
+        return new Schedule(bpm, messages, results, endOfTrack < 0 && results.length > 0 ? results[results.length - 1] : Math.max(0, endOfTrack));
+    }
+
+    /** The batch window, in microseconds. */
+    private volatile long batchWindow = ReceiverBridge.NO_BATCHING;
+
+    /** The controller. */
+    private final SoundController controller;
+
+    /** The device receiving the short messages in addition to the controller, null if none. */
+    private volatile Receiver device;
+
+    /** The lateness of the dispatched events. */
+    private final LatencyHistogram jitter = new LatencyHistogram();
+
+    /** The origin of the playback, in nanoseconds, moved forward by the pauses. */
+    private volatile long origin;
+
+    /** The paused. */
+    private volatile boolean paused;
+
+    /** The time of the pause, in nanoseconds. */
+    private volatile long pausedAt;
+
+    /** The receiver forwarding the short messages to the controller. */
+    private final ReceiverBridge receiver;
+
+    /** The running. */
+    private volatile boolean running;
+
+    /** The spin threshold, in nanoseconds. */
+    private volatile long spinThreshold = DEFAULT_SPIN_THRESHOLD;
+
+    /** The stopped. */
+    private volatile boolean stopped;
+
+    /** The thread playing the sequence. */
+    private volatile Thread thread;
+
+    /**
+     * Instantiates a new engine.
+     * @param controller the controller
+     */
+    public SequencerEngine(final SoundController controller) {
+        super();
+        this.controller = controller;
+        receiver = new ReceiverBridge(controller, null);
+    }
+
+    /**
+     * Gets the batch window.
+     * @return the batch window, in microseconds, {@link ReceiverBridge#NO_BATCHING} if disabled
+     */
+    public long getBatchWindow() {
+        return batchWindow;
+    }
+
+    /**
+     * Gets the device.
+     * @return the device or null if none
+     */
+    public Receiver getDevice() {
+        return device;
+    }
+
+    /**
+     * Gets the histogram of the lateness of the dispatched events, in nanoseconds.
+     * @return the jitter
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Gets the position in the played sequence.
+     * @return the microsecond position, 0 if not running
+     */
+    public long getMicrosecondPosition() {
+        if (!running) {
+            return 0;
+        }
+
+        return ((paused ? pausedAt : System.nanoTime()) - origin) / 1000;
+    }
+
+    /**
+     * Gets the spin threshold.
+     * @return the spin threshold, in nanoseconds
+     */
+    public long getSpinThreshold() {
+        return spinThreshold;
+    }
+
+    /**
+     * Checks if is paused.
+     * @return true, if is paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Checks if is running.
+     * @return true, if a sequence is playing, even paused
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Checks if is stopped.
+     * @return true, if the playback has been stopped and the engine has not been started again
+     * @see #start()
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Pause the playback, the sounding notes are released by the playing thread.
+     */
+    public void pause() {
+        if (!paused) {
+            pausedAt = System.nanoTime();
+            paused = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Start the engine and play the sequence on the calling thread, returns when the sequence is completed or stopped.
+     * @param sequence the sequence
+     * @param bpm      the tempo used until the first tempo change of the sequence
+     * @throws InterruptedException the interrupted exception
+     */
+    public void play(final Sequence sequence, final short bpm) throws InterruptedException {
+        start();
+        play(schedule(sequence, bpm), System.nanoTime());
+    }
+
+    /**
+     * Play the prepared schedule on the calling thread, returns at the time of the last end of track or when the playback is stopped.<br>
+     * Passing the end of the previous schedule as start chains the sequences without any gap.<br>
+     * Nothing is played if the engine has been stopped and not started again, so a stop received between two schedules is not lost.
+     * @param schedule the schedule
+     * @param start    the time of the start, from {@link System#nanoTime()}
+     * @return the time of the end of the schedule, from {@link System#nanoTime()}, or -1 if stopped
+     * @throws InterruptedException the interrupted exception
+     */
+    public long play(final Schedule schedule, final long start) throws InterruptedException {
+        final MidiMessage[] messages = schedule.messages;
+        final long[] times = schedule.times;
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} events scheduled over {} ms", String.valueOf(times.length), String.valueOf(schedule.duration / 1_000_000));
+        }
+
+        if (stopped) {
+            return -1;
+        }
+
+        thread = Thread.currentThread();
+        origin = start;
+
+        if (paused) {
+            pausedAt = System.nanoTime();
+        }
+
+        running = true;
+        final long window = batchWindow;
+        // the engine delivers the batches itself before waiting, no timer is needed
+        receiver.setBatchWindow(window, false);
+        // time of the first event of the current batch, the next events of the window are dispatched without waiting
+        long batch = 0;
+
+        try {
+            for (int i = 0; i < times.length; i++) {
+                if (i == 0 || window < 0 || times[i] - batch > window * 1000) {
+                    receiver.flush();
+
+                    if (!await(times[i])) {
+                        allNotesOff();
+
+                        return -1;
+                    }
+
+                    jitter.record(System.nanoTime() - origin - times[i]);
+                    batch = times[i];
+                }
+
+                dispatch(messages[i], times[i] / 1000);
+            }
+
+            receiver.flush();
+
+            // the last event is the last end of track, the sequence is completed as soon as it is dispatched
+            return origin + schedule.duration;
+        } finally {
+            running = false;
+            thread = null;
+        }
+    }
+
+    /**
+     * Resume the playback.
+     */
+    public void resume() {
+        if (paused) {
+            // the time spent in pause is skipped by moving the origin
+            origin += System.nanoTime() - pausedAt;
+            paused = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Sets the batch window, the short messages of the events scheduled in the window of the first one are dispatched together when the first one is due.<br>
+     * Applied from the next played sequence.
+     * @param batchWindow the batch window, in microseconds, 0 to group the events having the same time, {@link ReceiverBridge#NO_BATCHING} to disable
+     * @see SoundController#controlChange(javax.sound.midi.ShortMessage[], int)
+     */
+    public void setBatchWindow(final long batchWindow) {
+        this.batchWindow = batchWindow < 0 ? ReceiverBridge.NO_BATCHING : batchWindow;
+    }
+
+    /**
+     * Sets the device receiving the short messages in addition to the controller, for example the default synthesizer.
+     * @param device the device, null if none
+     */
+    public void setDevice(final Receiver device) {
+        this.device = device;
+    }
+
+    /**
+     * Sets the spin threshold, the engine parks until this delay before an event and then spins, a higher threshold lowers the jitter and uses more processor time.
+     * @param spinThreshold the spin threshold, in nanoseconds, 0 to park only
+     */
+    public void setSpinThreshold(final long spinThreshold) {
+        this.spinThreshold = Math.max(0, spinThreshold);
+    }
+
+    /**
+     * Start the engine, clearing a previous stop so the next schedules can be played.
+     */
+    public void start() {
+        stopped = false;
+    }
+
+    /**
+     * Stop the playback, {@link #play(Schedule, long)} returns before the next event and the next schedules are not played until the engine is started again.
+     * @see #start()
+     */
+    public void stop() {
+        stopped = true;
+        paused = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Send all notes off to all the channels.
+     */
+    private void allNotesOff() {
+        try {
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                dispatch(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0), -1);
+            }
+        } catch (final InvalidMidiDataException e) {
+            LOGGER.warn("Cannot release the notes", e);
+        }
+    }
+
+    /**
+     * Wait until the time of the event, parking while it is far and spinning when it is close.
+     * @param time the time of the event, in nanoseconds from the origin
+     * @return true if the event must be dispatched, false if the playback is stopped
+     * @throws InterruptedException the interrupted exception
+     */
+    private boolean await(final long time) throws InterruptedException {
+        boolean released = false;
+
+        while (true) {
+            if (stopped) {
+                return false;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (paused) {
+                // released by the playing thread, so the controller is always called by a single thread
+                if (!released) {
+                    allNotesOff();
+                    released = true;
+                }
+
+                LockSupport.park(this);
+
+                continue;
+            }
+
+            released = false;
+
+            final long remaining = origin + time - System.nanoTime();
+
+            if (remaining <= 0) {
+                return true;
+            }
+
+            if (remaining > spinThreshold) {
+                LockSupport.parkNanos(this, remaining - spinThreshold);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Dispatch the message.
+     * @param message   the message
+     * @param timeStamp the time stamp, in microseconds
+     */
+    private void dispatch(final MidiMessage message, final long timeStamp) {
+        if (message instanceof MetaMessage) {
+            // the short messages of the batch are delivered first to keep the order
+            receiver.flush();
+            controller.meta((MetaMessage) message);
+
+            return;
+        }
+
+        receiver.send(message, timeStamp);
+        final Receiver current = device;
+
+        if (current != null) {
+            current.send(message, -1);
+        }
+    }
+
+}
@@ -0,0 +1,618 @@
+package org.infodavid.professore.core.midi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+
+import org.infodavid.professore.core.audio.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class SessionScheduler.<br>
+ * Plays many sessions, each one with its own {@link SoundController} and play list, using a small fixed number of worker threads instead of one thread and one sequencer per player.<br>
+ * The sessions waiting for their next event are kept in a queue ordered by deadline, a worker takes the earliest session, dispatches its due events and puts it back.<br>
+ * A worker dispatches a bounded number of events per turn, so a session with a dense burst of events does not delay the other sessions.
+ */
+public final class SessionScheduler implements Closeable {
+
+    /**
+     * The Class Session.<br>
+     * Playback session of a {@link SoundController}, the controller is called by one worker at a time.
+     */
+    public final class Session implements Closeable, Delayed {
+
+        /** The bpm. */
+        private volatile short bpm = MidiPlayerRunnable.DEFAULT_BPM;
+
+        /** The completed count. */
+        private final LongAdder completedCount = new LongAdder();
+
+        /** The controller. */
+        private final SoundController controller;
+
+        /** The current entry, null if idle. */
+        private PlayListEntry current;
+
+        /** The deadline of the next event, in nanoseconds, only modified while the session is not in the queue. */
+        private long deadline;
+
+        /** The dispatched count. */
+        private final LongAdder dispatchedCount = new LongAdder();
+
+        /** The index of the next event. */
+        private int index;
+
+        /** The lateness of the dispatched events. */
+        private final LatencyHistogram jitter = new LatencyHistogram();
+
+        /** The origin of the current schedule, in nanoseconds. */
+        private long origin;
+
+        /** The paused. */
+        private boolean paused;
+
+        /** The time of the pause. */
+        private long pausedAt;
+
+        /** The play list. */
+        private final Queue<PlayListEntry> playList = new ConcurrentLinkedQueue<>();
+
+        /** The queued, true while the session is in the queue of the scheduler. */
+        private boolean queued;
+
+        /** The receiver forwarding the short messages to the controller. */
+        private final Receiver receiver;
+
+        /** The schedule of the current entry, null if idle or waiting for the entry to be parsed. */
+        private SequencerEngine.Schedule schedule;
+
+        /**
+         * Instantiates a new session.
+         * @param controller the controller
+         */
+        private Session(final SoundController controller) {
+            this.controller = controller;
+            receiver = new ReceiverBridge(controller, null);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.io.Closeable#close()
+         */
+        @Override
+        public void close() {
+            stop();
+            sessions.remove(this);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other instanceof Session) {
+                return Long.compare(deadline, ((Session) other).deadline);
+            }
+
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Gets the bpm.
+         * @return the bpm
+         */
+        public short getBpm() {
+            return bpm;
+        }
+
+        /**
+         * Gets the number of completed entries.
+         * @return the completed count
+         */
+        public long getCompletedCount() {
+            return completedCount.sum();
+        }
+
+        /**
+         * Gets the controller.
+         * @return the controller
+         */
+        public SoundController getController() {
+            return controller;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
+         */
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets the number of dispatched events.
+         * @return the dispatched count
+         */
+        public long getDispatchedCount() {
+            return dispatchedCount.sum();
+        }
+
+        /**
+         * Gets the histogram of the lateness of the dispatched events, in nanoseconds.
+         * @return the jitter
+         */
+        public LatencyHistogram getJitter() {
+            return jitter;
+        }
+
+        /**
+         * Gets the position in the current entry.
+         * @return the microsecond position, 0 if idle
+         */
+        public synchronized long getMicrosecondPosition() {
+            if (schedule == null) {
+                return 0;
+            }
+
+            return ((paused ? pausedAt : System.nanoTime()) - origin) / 1000;
+        }
+
+        /**
+         * Gets the number of entries waiting in the play list.
+         * @return the play list size
+         */
+        public int getPlayListSize() {
+            return playList.size();
+        }
+
+        /**
+         * Checks if is paused.
+         * @return true, if is paused
+         */
+        public synchronized boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * Checks if is playing.
+         * @return true, if an entry is playing and not paused
+         */
+        public synchronized boolean isPlaying() {
+            return current != null && !paused;
+        }
+
+        /**
+         * Pause the playback, the sounding notes are released.
+         */
+        public synchronized void pause() {
+            if (!paused) {
+                paused = true;
+                pausedAt = System.nanoTime();
+                allNotesOff();
+            }
+        }
+
+        /**
+         * Add the file to the play list of the session, the file is parsed in the background using the loader of the scheduler.
+         * @param file the file
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        public void play(final Path file) throws IOException {
+            if (!Files.isReadable(file)) {
+                throw new NoSuchFileException(file.toString());
+            }
+
+            final SequenceCache current = cache;
+            play(new PlayListEntry(file.getFileName().toString(), CompletableFuture.supplyAsync(() -> {
+                try {
+                    // the sequence is only read by the scheduler, so the cached one is shared by the sessions
+                    return current == null ? SequenceCache.readSequence(file) : current.getSharedSequence(file);
+                } catch (final IOException | InvalidMidiDataException e) {
+                    throw new CompletionException(e);
+                }
+            }, loader)));
+        }
+
+        /**
+         * Add the sequence to the play list of the session.
+         * @param title    the title
+         * @param sequence the sequence
+         */
+        public void play(final String title, final Sequence sequence) {
+            play(new PlayListEntry(title, CompletableFuture.completedFuture(sequence)));
+        }
+
+        /**
+         * Resume the playback.
+         */
+        public synchronized void resume() {
+            if (paused) {
+                origin += System.nanoTime() - pausedAt;
+                paused = false;
+
+                if (schedule != null) {
+                    enqueue(origin + (index < schedule.size() ? schedule.getTime(index) : schedule.getDuration()));
+                }
+            }
+        }
+
+        /**
+         * Sets the bpm, used by the entries scheduled after the change.
+         * @param value the bpm
+         */
+        public void setBpm(final short value) {
+            bpm = value <= 0 ? MidiPlayerRunnable.DEFAULT_BPM : value;
+        }
+
+        /**
+         * Stop the playback and clear the play list, the sounding notes are released.
+         */
+        public synchronized void stop() {
+            playList.clear();
+
+            if (current != null) {
+                current = null;
+                schedule = null;
+                allNotesOff();
+            }
+
+            paused = false;
+        }
+
+        /**
+         * Release the notes of all the channels.
+         */
+        private void allNotesOff() {
+            try {
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0), -1);
+                }
+            } catch (final InvalidMidiDataException e) {
+                LOGGER.warn("Cannot release the notes", e);
+            }
+        }
+
+        /**
+         * Start the next entry of the play list, if its schedule is not ready the session waits for it without holding a worker.
+         * @param start the time of the start of the entry, in nanoseconds
+         */
+        private void advance(final long start) {
+            final PlayListEntry next = playList.peek();
+            current = null;
+            schedule = null;
+
+            if (next == null || closed.get()) {
+                return;
+            }
+
+            final CompletableFuture<SequencerEngine.Schedule> prepared = next.prepare(bpm, loader);
+
+            if (!prepared.isDone()) {
+                current = next;
+                prepared.whenComplete((s, e) -> ready(next));
+
+                return;
+            }
+
+            playList.poll();
+
+            if (prepared.isCompletedExceptionally()) {
+                LOGGER.error("Cannot play: {}", next.getTitle(), prepared.handle((s, e) -> e).join());
+                advance(System.nanoTime());
+
+                return;
+            }
+
+            current = next;
+            schedule = prepared.join();
+            index = 0;
+            origin = start;
+            LOGGER.debug("Playing: {}", next.getTitle());
+            final PlayListEntry following = playList.peek();
+
+            if (following != null) {
+                // parsed and scheduled while the current entry plays
+                following.prepare(bpm, loader);
+            }
+
+            if (!paused) {
+                enqueue(origin + (schedule.size() == 0 ? schedule.getDuration() : schedule.getTime(0)));
+            }
+        }
+
+        /**
+         * Dispatch the message.
+         * @param message   the message
+         * @param timeStamp the time stamp, in microseconds
+         */
+        private void dispatch(final MidiMessage message, final long timeStamp) {
+            if (message instanceof MetaMessage) {
+                controller.meta((MetaMessage) message);
+            } else {
+                receiver.send(message, timeStamp);
+            }
+        }
+
+        /**
+         * Put the session in the queue of the scheduler with the given deadline.<br>
+         * A queued session is moved to its new deadline, unless a worker already took it: the worker then runs it and queues it again with the right deadline.
+         * @param time the deadline
+         */
+        private void enqueue(final long time) {
+            if (queued && !queue.remove(this)) {
+                return;
+            }
+
+            deadline = time;
+            queued = true;
+            queue.add(this);
+        }
+
+        /**
+         * Play the entry.
+         * @param entry the entry
+         */
+        private synchronized void play(final PlayListEntry entry) {
+            if (closed.get()) {
+                throw new IllegalStateException("Scheduler is closed");
+            }
+
+            playList.add(entry);
+
+            if (current == null) {
+                advance(System.nanoTime());
+            }
+        }
+
+        /**
+         * Called when the schedule of the entry is ready.
+         * @param entry the entry
+         */
+        private synchronized void ready(final PlayListEntry entry) {
+            // the session may have been stopped while the entry was parsed
+            if (current == entry && schedule == null) {
+                advance(System.nanoTime());
+            }
+        }
+
+        /**
+         * Dispatch the due events of the session, called by a worker.
+         */
+        private synchronized void run() {
+            queued = false;
+
+            if (schedule == null || paused) {
+                return;
+            }
+
+            final int size = schedule.size();
+            int count = 0;
+            long now = System.nanoTime();
+
+            while (index < size && count < eventsPerTurn) {
+                final long time = origin + schedule.getTime(index);
+
+                if (time > now) {
+                    break;
+                }
+
+                jitter.record(now - time);
+                dispatch(schedule.getMessage(index), schedule.getTime(index) / 1000);
+                index++;
+                count++;
+                now = System.nanoTime();
+            }
+
+            dispatchedCount.add(count);
+
+            if (index < size) {
+                enqueue(origin + schedule.getTime(index));
+
+                return;
+            }
+
+            final long end = origin + schedule.getDuration();
+
+            if (end > now) {
+                // waiting for the last end of track
+                enqueue(end);
+
+                return;
+            }
+
+            completedCount.increment();
+            advance(now - end < MAX_CHAIN_DELAY ? end : now);
+        }
+    }
+
+    /** The Constant ALL_NOTES_OFF. */
+    private static final int ALL_NOTES_OFF = 123;
+
+    /** The Constant CHANNELS. */
+    private static final int CHANNELS = 16;
+
+    /** The Constant DEFAULT_EVENTS_PER_TURN. */
+    public static final int DEFAULT_EVENTS_PER_TURN = 64;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionScheduler.class);
+
+    /** The Constant MAX_CHAIN_DELAY, in nanoseconds, the next entry starts at the end of the previous one if it is ready before this delay. */
+    private static final long MAX_CHAIN_DELAY = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** The cache of the parsed files, disabled by default. */
+    private volatile SequenceCache cache = null;
+
+    /** The closed. */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /** The maximum number of events dispatched for a session before serving the other sessions. */
+    private final int eventsPerTurn;
+
+    /** The executor used to parse and schedule the entries. */
+    private volatile Executor loader = ForkJoinPool.commonPool();
+
+    /** The sessions waiting for their next event, ordered by deadline. */
+    private final DelayQueue<Session> queue = new DelayQueue<>();
+
+    /** The open sessions. */
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    /** The workers. */
+    private final Thread[] workers;
+
+    /**
+     * Instantiates a new scheduler using one worker per available processor.
+     */
+    public SessionScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_EVENTS_PER_TURN);
+    }
+
+    /**
+     * Instantiates a new scheduler.
+     * @param threads       the number of worker threads
+     * @param eventsPerTurn the maximum number of events dispatched for a session before serving the other sessions
+     */
+    public SessionScheduler(final int threads, final int eventsPerTurn) {
+        super();
+
+        if (threads <= 0 || eventsPerTurn <= 0) {
+            throw new IllegalArgumentException("Threads and events per turn must be positive");
+        }
+
+        this.eventsPerTurn = eventsPerTurn;
+        workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, SessionScheduler.class.getSimpleName() + '-' + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MAX_PRIORITY);
+            workers[i].start();
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+
+        for (final Session session : sessions) {
+            session.close();
+        }
+
+        for (final Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Gets the cache of the parsed files.
+     * @return the cache or null if disabled
+     */
+    public SequenceCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the executor used to parse and schedule the entries.
+     * @return the loader
+     */
+    public Executor getLoader() {
+        return loader;
+    }
+
+    /**
+     * Gets the number of open sessions.
+     * @return the session count
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Gets the number of worker threads.
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    /**
+     * Open a session.
+     * @param controller the controller receiving the events of the session
+     * @return the session
+     */
+    public Session open(final SoundController controller) {
+        if (closed.get()) {
+            throw new IllegalStateException("Scheduler is closed");
+        }
+
+        final Session result = new Session(controller);
+        sessions.add(result);
+
+        return result;
+    }
+
+    /**
+     * Sets the cache of the parsed files, the sessions playing the same file then share its parsed sequence.
+     * @param cache the cache, null to parse the files on each call, the default
+     */
+    public void setCache(final SequenceCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the executor used to parse and schedule the entries.
+     * @param loader the loader, null to use the common fork/join pool
+     */
+    public void setLoader(final Executor loader) {
+        this.loader = loader == null ? ForkJoinPool.commonPool() : loader;
+    }
+
+    /**
+     * Loop of a worker.
+     */
+    private void work() {
+        while (!closed.get()) {
+            try {
+                queue.take().run();
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return;
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Session failed", e);
+            }
+        }
+    }
+}
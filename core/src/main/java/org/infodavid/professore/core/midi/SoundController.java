@@ -3,8 +3,11 @@ package org.infodavid.professore.core.midi;
 import javax.sound.midi.ControllerEventListener;
 import javax.sound.midi.MetaEventListener;
 import javax.sound.midi.Sequencer;
+import javax.sound.midi.ShortMessage;
 
 import org.infodavid.professore.core.Note;
+import org.infodavid.professore.core.NoteEvent;
+import org.infodavid.professore.core.NotePool;
 
 /**
  * The Interface SoundController.
@@ -12,11 +15,52 @@ import org.infodavid.professore.core.Note;
 public interface SoundController extends ControllerEventListener, MetaEventListener{
 
     /**
-     * Control change.
+     * Control change.<br>
+     * The note may be returned to the {@link org.infodavid.professore.core.NotePool} by the caller when this method returns, implementations must not keep a reference to it.
      * @param note the event
      */
     void controlChange(final Note note);
 
+    /**
+     * Control change.<br>
+     * The default implementation borrows a note from the {@link NotePool} and calls {@link #controlChange(Note)}, implementations overriding this method avoid the pool.
+     * @param event the event packed using {@link NoteEvent}
+     */
+    default void controlChange(final long event) {
+        if (!NoteEvent.isNote(event)) {
+            return;
+        }
+
+        // the note is returned to the pool when the method returns, implementations must not keep a reference to it
+        try (Note note = NotePool.getInstance().borrowObject(event)) {
+            controlChange(note);
+        }
+    }
+
+    /**
+     * Control change of a batch of events, for example the notes of a chord.<br>
+     * The default implementation calls {@link #controlChange(long)} for each event, implementations may override it to pay the overhead once per batch.
+     * @param events the events packed using {@link NoteEvent}, the array is reused by the caller when this method returns
+     * @param length the number of events in the array
+     */
+    default void controlChange(final long[] events, final int length) {
+        for (int i = 0; i < length; i++) {
+            controlChange(events[i]);
+        }
+    }
+
+    /**
+     * Control change of a batch of messages sharing the same time stamp or received in the same window, see {@link ReceiverBridge#setBatchWindow(long)}.<br>
+     * The default implementation calls {@link #controlChange(ShortMessage)} for each message, in order.
+     * @param messages the messages, the array is reused by the caller when this method returns
+     * @param length   the number of messages in the array
+     */
+    default void controlChange(final ShortMessage[] messages, final int length) {
+        for (int i = 0; i < length; i++) {
+            controlChange(messages[i]);
+        }
+    }
+
     /**
      * Gets the filter.
      * @return the filter
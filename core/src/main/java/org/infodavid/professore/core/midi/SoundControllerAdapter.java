@@ -1,16 +1,18 @@
 package org.infodavid.professore.core.midi;
 
+import java.util.Arrays;
+
 import javax.sound.midi.MetaMessage;
 import javax.sound.midi.Sequencer;
 import javax.sound.midi.ShortMessage;
 
 import org.infodavid.professore.core.Note;
-import org.infodavid.professore.core.NotePool;
+import org.infodavid.professore.core.NoteEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.gs.collections.api.map.primitive.MutableByteObjectMap;
-import com.gs.collections.impl.map.mutable.primitive.ByteObjectHashMap;
+import com.gs.collections.api.map.primitive.MutableByteLongMap;
+import com.gs.collections.impl.map.mutable.primitive.ByteLongHashMap;
 
 /**
  * The Class SoundControllerAdapter.
@@ -20,11 +22,23 @@ public class SoundControllerAdapter implements SoundController {
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(SoundControllerAdapter.class);
 
+    /**
+     * Checks if the message is one of the channel mode messages releasing the notes.
+     * @param message the message
+     * @return true, if the notes must be released
+     */
+    private static boolean isAllNotesOff(final ShortMessage message) {
+        return message.getCommand() == ShortMessage.CONTROL_CHANGE && message.getData1() >= 120 && message.getData1() <= 127;
+    }
+
+    /** The events of the batch being delivered. */
+    private long[] events = new long[16];
+
     /** The filter. */
     private NoteFilter filter = null;
 
-    /** The pressed. */
-    private final MutableByteObjectMap<ShortMessage> pressed = new ByteObjectHashMap<>();
+    /** The pressed events by key. */
+    private final MutableByteLongMap pressed = new ByteLongHashMap();
 
     /*
      * (non-javadoc)
@@ -39,33 +53,60 @@ public class SoundControllerAdapter implements SoundController {
      * (non-javadoc)
      * @see javax.sound.midi.ControllerEventListener#controlChange(javax.sound.midi.ShortMessage)
      */
-    @SuppressWarnings("resource")
     @Override
     public void controlChange(final ShortMessage message) {
         LOGGER.debug("controlChange invoked with message: {}", message);
-        final Note note = NotePool.getInstance().borrowObject(message);
+        final long event = NoteEvent.encode(message);
+
+        if (NoteEvent.isNote(event)) {
+            if (!accept(event)) {
+                return;
+            }
+
+            press(event);
+            controlChange(event);
+        } else if (isAllNotesOff(message)) {
+            releaseAll();
+        }
+    }
 
-        if (filter != null && !filter.accept(note)) {
-            LOGGER.info("Filtered note: {}", note);
-            return;
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.professore.core.midi.SoundController#controlChange(javax.sound.midi.ShortMessage[], int)
+     */
+    @Override
+    public void controlChange(final ShortMessage[] messages, final int length) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("controlChange invoked with {} messages", String.valueOf(length));
         }
 
-        if (note == null) {
-            if (message.getCommand() == ShortMessage.CONTROL_CHANGE && message.getData1() >= 120 && message.getData1() <= 127) {
-                for (final ShortMessage msg : pressed.values()) {
-                    controlChange(NotePool.getInstance().borrowObject(msg).setPressed(false));
+        if (events.length < length) {
+            events = Arrays.copyOf(events, Math.max(length, events.length * 2));
+        }
+
+        final long[] batch = events;
+        int size = 0;
+
+        for (int i = 0; i < length; i++) {
+            final long event = NoteEvent.encode(messages[i]);
+
+            if (NoteEvent.isNote(event)) {
+                if (!accept(event)) {
+                    continue;
                 }
 
-                pressed.clear();
-            }
-        } else {
-            if (note.isPressed()) {
-                pressed.put(note.getKey(), message);
-            } else {
-                pressed.remove(note.getKey());
+                press(event);
+                batch[size++] = event;
+            } else if (isAllNotesOff(messages[i])) {
+                // the notes received before the release are delivered first
+                controlChange(batch, size);
+                size = 0;
+                releaseAll();
             }
+        }
 
-            controlChange(note);
+        if (size > 0) {
+            controlChange(batch, size);
         }
     }
 
@@ -104,4 +145,41 @@ public class SoundControllerAdapter implements SoundController {
     public void setFilter(final NoteFilter filter) {
         this.filter = filter;
     }
+
+    /**
+     * Checks if the note event is accepted by the filter, the other events are not filtered.
+     * @param event the note event
+     * @return true, if accepted
+     */
+    private boolean accept(final long event) {
+        if (filter != null && !filter.accept(event)) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Filtered note: {}", NoteEvent.toString(event));
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Update the pressed keys.
+     * @param event the note event
+     */
+    private void press(final long event) {
+        if (NoteEvent.isPressed(event)) {
+            pressed.put(NoteEvent.getKey(event), event);
+        } else {
+            pressed.remove(NoteEvent.getKey(event));
+        }
+    }
+
+    /**
+     * Release the pressed keys.
+     */
+    private void releaseAll() {
+        pressed.forEachValue(e -> controlChange(NoteEvent.withPressed(e, false)));
+        pressed.clear();
+    }
 }
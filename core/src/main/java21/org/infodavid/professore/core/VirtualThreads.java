@@ -0,0 +1,43 @@
+package org.infodavid.professore.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The Class VirtualThreads.<br>
+ * Factory of the virtual threads, this version is used on Java 21 and later.
+ */
+final class VirtualThreads {
+
+    /**
+     * Checks if the virtual threads are supported.
+     * @return true
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Checks if the thread is virtual.
+     * @param thread the thread
+     * @return true, if the thread is virtual
+     */
+    static boolean isVirtual(final Thread thread) {
+        return thread.isVirtual();
+    }
+
+    /**
+     * New factory.
+     * @param name the prefix of the names of the threads
+     * @return the factory
+     */
+    static ThreadFactory newFactory(final String name) {
+        return Thread.ofVirtual().name(name + '-', 0).factory();
+    }
+
+    /**
+     * Instantiates a new virtual threads.
+     */
+    private VirtualThreads() {
+        super();
+    }
+}
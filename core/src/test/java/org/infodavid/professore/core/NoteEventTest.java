@@ -0,0 +1,113 @@
+package org.infodavid.professore.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class NoteEventTest.
+ */
+public class NoteEventTest {
+
+    /**
+     * Test the encoding of the fields at their boundaries.
+     */
+    @Test
+    public void testEncodeAtBoundaries() {
+        final long event = NoteEvent.encode((byte) 15, (byte) 127, true, (short) 127, (byte) 255, NoteEvent.MAX_TICK);
+
+        assertTrue(NoteEvent.isNote(event));
+        assertEquals(15, NoteEvent.getChannel(event));
+        assertEquals(127, NoteEvent.getKey(event));
+        assertEquals(127, NoteEvent.getVelocity(event));
+        assertEquals((byte) 255, NoteEvent.getTrack(event));
+        assertEquals(NoteEvent.MAX_TICK, NoteEvent.getTick(event));
+        assertTrue(NoteEvent.isPressed(event));
+    }
+
+    /**
+     * Test the encoding of the lowest values.
+     */
+    @Test
+    public void testEncodeAtZero() {
+        final long event = NoteEvent.encode((byte) 0, (byte) 0, false, (short) 0, (byte) 0, 0);
+
+        assertTrue(NoteEvent.isNote(event));
+        assertEquals(0, NoteEvent.getChannel(event));
+        assertEquals(0, NoteEvent.getKey(event));
+        assertEquals(0, NoteEvent.getVelocity(event));
+        assertEquals(0, NoteEvent.getTrack(event));
+        assertEquals(0, NoteEvent.getTick(event));
+        assertFalse(NoteEvent.isPressed(event));
+    }
+
+    /**
+     * Test the fields do not overlap, each field at its maximum while the others are 0.
+     */
+    @Test
+    public void testEncodeFieldsIndependently() {
+        assertEquals(15, NoteEvent.getChannel(NoteEvent.encode((byte) 15, (byte) 0, false, (short) 0, (byte) 0, 0)));
+        assertEquals(0, NoteEvent.getKey(NoteEvent.encode((byte) 15, (byte) 0, false, (short) 0, (byte) 0, 0)));
+        assertEquals(127, NoteEvent.getKey(NoteEvent.encode((byte) 0, (byte) 127, false, (short) 0, (byte) 0, 0)));
+        assertEquals(0, NoteEvent.getVelocity(NoteEvent.encode((byte) 0, (byte) 127, false, (short) 0, (byte) 0, 0)));
+        assertEquals(127, NoteEvent.getVelocity(NoteEvent.encode((byte) 0, (byte) 0, false, (short) 127, (byte) 0, 0)));
+        assertEquals(0, NoteEvent.getChannel(NoteEvent.encode((byte) 0, (byte) 0, false, (short) 127, (byte) 0, 0)));
+        assertEquals(0, NoteEvent.getTrack(NoteEvent.encode((byte) 0, (byte) 0, false, (short) 0, (byte) 0, NoteEvent.MAX_TICK)));
+        assertEquals(0, NoteEvent.getTick(NoteEvent.encode((byte) 0, (byte) 0, false, (short) 0, (byte) 255, 0)));
+    }
+
+    /**
+     * Test the tick is truncated to 36 bits.
+     */
+    @Test
+    public void testEncodeTruncatesTick() {
+        final long event = NoteEvent.encode((byte) 0, (byte) 60, true, (short) 100, (byte) 0, NoteEvent.MAX_TICK + 5);
+
+        assertTrue(NoteEvent.isNote(event));
+        assertEquals(4, NoteEvent.getTick(event));
+        assertEquals(60, NoteEvent.getKey(event));
+    }
+
+    /**
+     * Test the encoding of the messages.
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    @Test
+    public void testEncodeMessage() throws InvalidMidiDataException {
+        final long on = NoteEvent.encode(new ShortMessage(ShortMessage.NOTE_ON, 15, 127, 127), (byte) 3, 1000);
+        final long silent = NoteEvent.encode(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 0));
+        final long off = NoteEvent.encode(new ShortMessage(ShortMessage.NOTE_OFF, 1, 60, 64));
+
+        assertEquals(15, NoteEvent.getChannel(on));
+        assertEquals(127, NoteEvent.getKey(on));
+        assertEquals(127, NoteEvent.getVelocity(on));
+        assertEquals(3, NoteEvent.getTrack(on));
+        assertEquals(1000, NoteEvent.getTick(on));
+        assertTrue(NoteEvent.isPressed(on));
+        // a note on without velocity is a release
+        assertFalse(NoteEvent.isPressed(silent));
+        assertFalse(NoteEvent.isPressed(off));
+        assertEquals(64, NoteEvent.getVelocity(off));
+        assertEquals(NoteEvent.NONE, NoteEvent.encode(new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 123, 0)));
+        assertFalse(NoteEvent.isNote(NoteEvent.NONE));
+    }
+
+    /**
+     * Test the pressed flag is changed without modifying the other fields.
+     */
+    @Test
+    public void testWithPressed() {
+        final long event = NoteEvent.encode((byte) 15, (byte) 127, true, (short) 127, (byte) 255, NoteEvent.MAX_TICK);
+        final long released = NoteEvent.withPressed(event, false);
+
+        assertFalse(NoteEvent.isPressed(released));
+        assertEquals(event, NoteEvent.withPressed(released, true));
+        assertEquals(NoteEvent.getTick(event), NoteEvent.getTick(released));
+        assertEquals(NoteEvent.getKey(event), NoteEvent.getKey(released));
+    }
+}
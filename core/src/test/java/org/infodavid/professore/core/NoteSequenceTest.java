@@ -0,0 +1,112 @@
+package org.infodavid.professore.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class NoteSequenceTest.
+ */
+public class NoteSequenceTest {
+
+    /**
+     * New sequence of events sorted by tick, many of them sharing the same tick, the position of each event is encoded in its key and velocity.
+     * @param random the random
+     * @param track  the track
+     * @param size   the size
+     * @return the sequence
+     */
+    private static NoteSequence newSequence(final Random random, final byte track, final int size) {
+        final NoteSequence result = new NoteSequence(size);
+        long tick = 0;
+
+        for (int i = 0; i < size; i++) {
+            // mostly equal ticks
+            if (random.nextInt(4) == 0) {
+                tick += random.nextInt(3);
+            }
+
+            result.add(tick, track, (byte) 0, (byte) (i & 0x7F), (short) (i >> 7), true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Test the merge of empty sequences.
+     */
+    @Test
+    public void testMergeEmpty() {
+        final NoteSequence result = NoteSequence.merge(new NoteSequence(), new NoteSequence());
+
+        assertTrue(result.isEmpty());
+        assertEquals(0, NoteSequence.merge().size());
+    }
+
+    /**
+     * Test the events having the same tick keep the order of the sequences in the arguments, then their order in their sequence.
+     */
+    @Test
+    public void testMergeIsStable() {
+        final Random random = new Random(7);
+
+        for (int round = 0; round < 20; round++) {
+            final NoteSequence[] sequences = new NoteSequence[1 + random.nextInt(6)];
+            final List<long[]> expected = new ArrayList<>();
+
+            for (int s = 0; s < sequences.length; s++) {
+                sequences[s] = newSequence(random, (byte) s, random.nextInt(500));
+
+                for (int i = 0; i < sequences[s].size(); i++) {
+                    expected.add(new long[] {
+                            sequences[s].getTick(i), s, i
+                    });
+                }
+            }
+
+            // the sort of the list is stable, the events are added by sequence then by position
+            expected.sort(Comparator.comparingLong(e -> e[0]));
+            final NoteSequence result = NoteSequence.merge(sequences);
+
+            assertEquals(expected.size(), result.size());
+
+            for (int i = 0; i < result.size(); i++) {
+                final long[] event = expected.get(i);
+
+                assertEquals(event[0], result.getTick(i), "Tick at: " + i);
+                assertEquals(event[1], result.getTrack(i), "Sequence at: " + i);
+                assertEquals(event[2], result.getKey(i) | result.getVelocity(i) << 7, "Position at: " + i);
+            }
+        }
+    }
+
+    /**
+     * Test the merge keeps all the fields of the events.
+     */
+    @Test
+    public void testMergeKeepsFields() {
+        final NoteSequence first = new NoteSequence();
+        final NoteSequence second = new NoteSequence();
+        first.add(10, (byte) 1, (byte) 15, (byte) 127, (short) 127, true);
+        second.add(5, (byte) 2, (byte) 9, (byte) 0, (short) 0, true);
+        final NoteSequence result = NoteSequence.merge(first, second);
+
+        assertEquals(2, result.size());
+        assertEquals(5, result.getTick(0));
+        assertEquals(2, result.getTrack(0));
+        assertEquals(9, result.getChannel(0));
+        // no velocity is a release
+        assertEquals(false, result.isPressed(0));
+        assertEquals(10, result.getTick(1));
+        assertEquals(15, result.getChannel(1));
+        assertEquals(127, result.getKey(1));
+        assertEquals(127, result.getVelocity(1));
+        assertEquals(true, result.isPressed(1));
+    }
+}
@@ -0,0 +1,123 @@
+package org.infodavid.professore.core.audio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class TriggerRingTest.
+ */
+public class TriggerRingTest {
+
+    /** The Constant PRODUCERS. */
+    private static final int PRODUCERS = 4;
+
+    /** The Constant TRIGGERS, per producer. */
+    private static final int TRIGGERS = 20_000;
+
+    /**
+     * Test the capacity is rounded up to a power of two.
+     */
+    @Test
+    public void testCapacity() {
+        assertEquals(16, new TriggerRing(16).getCapacity());
+        assertEquals(32, new TriggerRing(17).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new TriggerRing(0));
+    }
+
+    /**
+     * Test the ring rejects the triggers when full and accepts them again once polled.
+     */
+    @Test
+    public void testFull() {
+        final TriggerRing ring = new TriggerRing(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll());
+        }
+
+        assertEquals(TriggerRing.EMPTY, ring.poll());
+        assertTrue(ring.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ring.offer(-1));
+    }
+
+    /**
+     * Test several producers and one consumer, each trigger is received once and the triggers of a producer are received in order.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final TriggerRing ring = new TriggerRing(64);
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Future<?>[] producers = new Future<?>[PRODUCERS];
+
+        try {
+            for (int p = 0; p < PRODUCERS; p++) {
+                final long producer = p;
+
+                producers[p] = executor.submit(() -> {
+                    start.await();
+
+                    for (long i = 0; i < TRIGGERS; i++) {
+                        // the producer in the high bits, the sequence number in the low bits, yielding when full so the test also runs on a single processor
+                        while (!ring.offer(producer << 32 | i)) {
+                            Thread.yield();
+                        }
+                    }
+
+                    return null;
+                });
+            }
+
+            final long[] next = new long[PRODUCERS];
+            long received = 0;
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            start.countDown();
+
+            while (received < (long) PRODUCERS * TRIGGERS) {
+                final long trigger = ring.poll();
+
+                if (trigger == TriggerRing.EMPTY) {
+                    assertTrue(System.nanoTime() < deadline, "Triggers lost, received: " + received);
+                    Thread.yield();
+
+                    continue;
+                }
+
+                final int producer = (int) (trigger >>> 32);
+
+                assertEquals(next[producer], trigger & 0xFFFFFFFFL, "Trigger of producer: " + producer);
+                next[producer]++;
+                received++;
+            }
+
+            for (final Future<?> future : producers) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            assertEquals(TriggerRing.EMPTY, ring.poll());
+            assertTrue(ring.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
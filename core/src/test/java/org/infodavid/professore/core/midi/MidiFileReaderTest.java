@@ -0,0 +1,315 @@
+package org.infodavid.professore.core.midi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.SysexMessage;
+import javax.sound.midi.Track;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class MidiFileReaderTest.<br>
+ * The events decoded by the reader are compared with the ones of the javax parser.
+ */
+public class MidiFileReaderTest {
+
+    /**
+     * The Class Recorder, sink recording the events as strings.
+     */
+    private static final class Recorder implements MidiEventSink {
+
+        /** The events. */
+        private final List<String> events = new ArrayList<>();
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#meta(int, long, int, java.nio.ByteBuffer, int, int)
+         */
+        @Override
+        public boolean meta(final int track, final long tick, final int type, final ByteBuffer data, final int offset, final int length) {
+            events.add(track + " " + tick + " meta " + type + ' ' + toString(data, offset, length));
+
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#shortMessage(int, long, int, int, int)
+         */
+        @Override
+        public boolean shortMessage(final int track, final long tick, final int status, final int data1, final int data2) {
+            events.add(track + " " + tick + " short " + status + ' ' + data1 + ' ' + data2);
+
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.professore.core.midi.MidiEventSink#sysex(int, long, int, java.nio.ByteBuffer, int, int)
+         */
+        @Override
+        public boolean sysex(final int track, final long tick, final int status, final ByteBuffer data, final int offset, final int length) {
+            events.add(track + " " + tick + " sysex " + toString(data, offset, length));
+
+            return true;
+        }
+
+        /**
+         * To string.
+         * @param data   the data
+         * @param offset the offset
+         * @param length the length
+         * @return the string
+         */
+        private static String toString(final ByteBuffer data, final int offset, final int length) {
+            final byte[] bytes = new byte[length];
+
+            for (int i = 0; i < length; i++) {
+                bytes[i] = data.get(offset + i);
+            }
+
+            return Arrays.toString(bytes);
+        }
+    }
+
+    /**
+     * File using the running status on note and program change messages, a delta time on two bytes, a tempo and a system exclusive event.
+     * @return the content of the file
+     */
+    private static byte[] newRunningStatusFile() {
+        final byte[] events = {
+                0x00, (byte) 0x90, 0x3C, 0x64, // note on
+                0x10, 0x3E, 0x64, // running status
+                0x10, (byte) 0xC0, 0x05, // program change, one data byte
+                0x10, 0x06, // running status
+                (byte) 0x81, 0x00, (byte) 0x80, 0x3C, 0x40, // delta time of 128, note off
+                0x00, 0x3E, 0x00, // running status
+                0x00, (byte) 0xFF, 0x51, 0x03, 0x07, (byte) 0xA1, 0x20, // tempo
+                0x00, (byte) 0xF0, 0x03, 0x7E, 0x7F, (byte) 0xF7, // system exclusive
+                0x00, (byte) 0x90, 0x40, 0x50, // note on
+                0x20, 0x40, 0x00, // running status, note on without velocity
+                0x00, (byte) 0xFF, 0x2F, 0x00 // end of track
+        };
+        final ByteBuffer result = ByteBuffer.allocate(22 + events.length);
+        result.putInt(0x4D546864).putInt(6).putShort((short) 0).putShort((short) 1).putShort((short) 96);
+        result.putInt(0x4D54726B).putInt(events.length).put(events);
+
+        return result.array();
+    }
+
+    /**
+     * Generated sequence of several tracks, written by the javax writer.
+     * @param seed the seed
+     * @return the content of the file
+     * @throws InvalidMidiDataException the invalid midi data exception
+     * @throws IOException              Signals that an I/O exception has occurred.
+     */
+    private static byte[] newSequenceFile(final long seed) throws InvalidMidiDataException, IOException {
+        final Random random = new Random(seed);
+        final Sequence sequence = new Sequence(Sequence.PPQ, 480);
+
+        for (int t = 0; t < 3; t++) {
+            final Track track = sequence.createTrack();
+            long tick = 0;
+            track.add(new MidiEvent(new MetaMessage(0x03, new byte[] {
+                    'T', (byte) ('0' + t)
+            }, 2), 0));
+
+            for (int i = 0; i < 300; i++) {
+                // large deltas use the variable length quantities on several bytes
+                tick += random.nextInt(8) == 0 ? random.nextInt(100_000) : random.nextInt(4);
+                final int channel = random.nextInt(16);
+                final int command = random.nextInt(10) == 0 ? ShortMessage.PROGRAM_CHANGE : random.nextBoolean() ? ShortMessage.NOTE_ON : ShortMessage.NOTE_OFF;
+                final int data2 = command == ShortMessage.PROGRAM_CHANGE ? 0 : random.nextInt(128);
+                track.add(new MidiEvent(new ShortMessage(command, channel, random.nextInt(128), data2), tick));
+            }
+
+            track.add(new MidiEvent(new SysexMessage(new byte[] {
+                    (byte) 0xF0, 0x7E, 0x7F, 0x09, 0x01, (byte) 0xF7
+            }, 6), tick + 1));
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 1, out);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the content using the reader.
+     * @param content the content
+     * @return the events
+     * @throws InvalidMidiDataException the invalid midi data exception
+     */
+    private static List<String> read(final byte[] content) throws InvalidMidiDataException {
+        final Recorder recorder = new Recorder();
+
+        assertTrue(MidiFileReader.read(ByteBuffer.wrap(content), recorder));
+
+        return recorder.events;
+    }
+
+    /**
+     * Read the content using the javax parser.
+     * @param content the content
+     * @return the events
+     * @throws InvalidMidiDataException the invalid midi data exception
+     * @throws IOException              Signals that an I/O exception has occurred.
+     */
+    private static List<String> readUsingJavax(final byte[] content) throws InvalidMidiDataException, IOException {
+        final Sequence sequence = MidiSystem.getSequence(new ByteArrayInputStream(content));
+        final Recorder recorder = new Recorder();
+        final Track[] tracks = sequence.getTracks();
+
+        for (int t = 0; t < tracks.length; t++) {
+            for (int i = 0; i < tracks[t].size(); i++) {
+                final MidiEvent event = tracks[t].get(i);
+                final MidiMessage message = event.getMessage();
+
+                if (message instanceof ShortMessage) {
+                    final ShortMessage shortMessage = (ShortMessage) message;
+                    recorder.shortMessage(t + 1, event.getTick(), shortMessage.getStatus(), shortMessage.getData1(), shortMessage.getData2());
+                } else if (message instanceof MetaMessage) {
+                    final MetaMessage meta = (MetaMessage) message;
+                    recorder.meta(t + 1, event.getTick(), meta.getType(), ByteBuffer.wrap(meta.getData()), 0, meta.getData().length);
+                } else if (message instanceof SysexMessage) {
+                    // the javax message contains the status byte, the reader gives the length then the data
+                    final byte[] data = ((SysexMessage) message).getData();
+                    recorder.sysex(t + 1, event.getTick(), message.getStatus(), ByteBuffer.wrap(data), 0, data.length);
+                }
+            }
+        }
+
+        return recorder.events;
+    }
+
+    /**
+     * Test a data byte without previous status is rejected.
+     */
+    @Test
+    public void testDataWithoutStatus() {
+        final byte[] content = newRunningStatusFile();
+        // the first status of the track becomes a data byte
+        content[23] = 0x10;
+
+        assertThrows(InvalidMidiDataException.class, () -> MidiFileReader.read(ByteBuffer.wrap(content), new Recorder()));
+    }
+
+    /**
+     * Test a file which is not a standard MIDI file is rejected.
+     */
+    @Test
+    public void testNotMidi() {
+        assertThrows(InvalidMidiDataException.class, () -> MidiFileReader.read(ByteBuffer.wrap("not a MIDI file".getBytes()), new Recorder()));
+    }
+
+    /**
+     * Test the running status, the program change messages, the meta and system exclusive events against the javax parser.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRunningStatus() throws Exception {
+        final byte[] content = newRunningStatusFile();
+        final List<String> events = read(content);
+
+        assertEquals(readUsingJavax(content), events);
+        assertEquals("1 16 short 144 62 100", events.get(1));
+        assertEquals("1 48 short 192 6 0", events.get(3));
+        assertEquals("1 176 short 128 62 0", events.get(5));
+    }
+
+    /**
+     * Test the generated files against the javax parser, read at once and track by track.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testSequences() throws Exception {
+        for (long seed = 0; seed < 5; seed++) {
+            final byte[] content = newSequenceFile(seed);
+            final List<String> expected = readUsingJavax(content);
+
+            assertEquals(expected, read(content), "Seed: " + seed);
+
+            final ByteBuffer[] tracks = MidiFileReader.splitTracks(ByteBuffer.wrap(content));
+            final Recorder recorder = new Recorder();
+
+            assertEquals(3, tracks.length);
+
+            for (int t = 0; t < tracks.length; t++) {
+                assertTrue(MidiFileReader.readTrack(tracks[t], t + 1, recorder));
+            }
+
+            assertEquals(expected, recorder.events, "Seed: " + seed);
+        }
+    }
+
+    /**
+     * Test the reading stops when the sink returns false.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testStop() throws Exception {
+        final int[] count = {
+                0
+        };
+
+        assertEquals(false, MidiFileReader.read(ByteBuffer.wrap(newRunningStatusFile()), (track, tick, status, data1, data2) -> ++count[0] < 2));
+        assertEquals(2, count[0]);
+    }
+
+    /**
+     * Test the truncated files, a truncated chunk is rejected and a track cut at any position either fails or gives the first events.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        final byte[] content = newRunningStatusFile();
+        final List<String> expected = read(content);
+
+        // the chunk length exceeds the data
+        for (int length = 22; length < content.length; length++) {
+            final byte[] truncated = Arrays.copyOf(content, length);
+
+            assertThrows(InvalidMidiDataException.class, () -> MidiFileReader.read(ByteBuffer.wrap(truncated), new Recorder()), "Length: " + length);
+        }
+
+        // the chunk length matches the data, the last event is cut
+        for (int length = 23; length < content.length; length++) {
+            final byte[] truncated = Arrays.copyOf(content, length);
+            ByteBuffer.wrap(truncated).putInt(18, length - 22);
+            final Recorder recorder = new Recorder();
+
+            try {
+                MidiFileReader.read(ByteBuffer.wrap(truncated), recorder);
+            } catch (@SuppressWarnings("unused") final InvalidMidiDataException e) {
+                // expected when an event is cut
+            }
+
+            assertEquals(expected.subList(0, recorder.events.size()), recorder.events, "Length: " + length);
+        }
+
+        // cut after the status of the first note
+        final byte[] truncated = Arrays.copyOf(content, 24);
+        ByteBuffer.wrap(truncated).putInt(18, 2);
+
+        assertThrows(InvalidMidiDataException.class, () -> MidiFileReader.read(ByteBuffer.wrap(truncated), new Recorder()));
+    }
+}